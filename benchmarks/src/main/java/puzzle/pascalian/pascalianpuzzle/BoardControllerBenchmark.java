@@ -0,0 +1,46 @@
+package puzzle.pascalian.pascalianpuzzle;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks reading and writing single colors through the BoardController.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardControllerBenchmark {
+
+    @Param({"2", "10", "28", "60"})
+    private int size;
+
+    private BoardController boardController;
+    private int cellCount;
+    private int index;
+
+    @Setup
+    public void setup(){
+        boardController = new BoardController();
+        boardController.setStartingRowLength(size);
+        cellCount = BoardModel.getCellCount(size);
+        for(int i = 0; i < cellCount; i++){
+            boardController.addColorIndex(i % 3);
+        }
+    }
+
+    @Benchmark
+    public int getColorFromIndex(){
+        index = (index + 1) % cellCount;
+        return boardController.getColorFromIndex(index);
+    }
+
+    @Benchmark
+    public void setColorIndex(){
+        index = (index + 1) % cellCount;
+        boardController.setColorIndex(index, index % 3);
+    }
+}
@@ -0,0 +1,55 @@
+package puzzle.pascalian.pascalianpuzzle;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the headless board computation, which has no size limit,
+ * from the sizes the view supports to far larger boards.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardModelBenchmark {
+
+    @Param({"2", "10", "28", "60", "250", "1000", "4000"})
+    private int size;
+
+    private int[] startingRow;
+    private BoardModel boardModel;
+    private int clicks;
+
+    @Setup
+    public void setup(){
+        Random random = new Random(42);
+        startingRow = new int[size];
+        for(int i = 0; i < size; i++){
+            startingRow[i] = random.nextInt(3);
+        }
+        boardModel = new BoardModel(startingRow);
+    }
+
+    @Benchmark
+    public BoardModel generate(){
+        return new BoardModel(startingRow);
+    }
+
+    /**
+     * A left click on the leftmost starting hexagon.
+     */
+    @Benchmark
+    public int click(){
+        clicks++;
+        return boardModel.setColor(0, 0, (startingRow[0] + clicks) % 3);
+    }
+
+    @Benchmark
+    public int computeApexColor(){
+        return BoardModel.computeApexColor(startingRow, ColorRule.PASCALIAN);
+    }
+}
@@ -0,0 +1,60 @@
+package puzzle.pascalian.pascalianpuzzle;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks building a whole board and recomputing it after a click on the
+ * starting row, including the Hexagon nodes. The view supports sizes up to
+ * the BoardController maximum. Without a running toolkit BoardView builds the
+ * whole board before returning, so each setup is measured to the last row.
+ * Setups rebuild every hexagon unless recolor is true, where the hexagons of
+ * the last board are recolored in place as in the app.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardViewBenchmark {
+
+    @Param({"2", "10", "28", "60"})
+    private int size;
+
+    @Param({"false", "true"})
+    private boolean recolor;
+
+    private BoardView boardView;
+    private int clicks;
+
+    @Setup
+    public void setup(){
+        BoardView.setRecoloring(recolor);
+        boardView = new BoardView(new BoardController());
+        boardView.changeBoardSize(size);
+    }
+
+    @Benchmark
+    public void setupBoard(){
+        boardView.setupBoard();
+    }
+
+    @Benchmark
+    public void setupSpecialBoard(){
+        boardView.setupSpecialBoard();
+    }
+
+    /**
+     * A left click on the leftmost starting hexagon, updated without animation.
+     */
+    @Benchmark
+    public int click(){
+        Hexagon hexagon = BoardView.getHexagon(0);
+        hexagon.setColor((hexagon.getColorIndex() + 1) % 3);
+        BoardView.setUpdating();
+        BoardView.propagateChanges(false);
+        return ++clicks;
+    }
+}
@@ -0,0 +1,51 @@
+package puzzle.pascalian.pascalianpuzzle;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the child color rule and the cost of creating a Hexagon.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HexagonBenchmark {
+
+    private final static int PAIRS = 1024;
+
+    private Hexagon hexagon;
+    private int[] leftColors;
+    private int[] rightColors;
+
+    @Setup
+    public void setup(){
+        Random random = new Random(42);
+        hexagon = new Hexagon(BoardController.NOT_A_COLOR, 1.0);
+        leftColors = new int[PAIRS];
+        rightColors = new int[PAIRS];
+        for(int i = 0; i < PAIRS; i++){
+            // Including transparent parents as the cleared board does
+            leftColors[i] = random.nextInt(4) - 1;
+            rightColors[i] = random.nextInt(4) - 1;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void getNextColorIndex(Blackhole blackhole){
+        for(int i = 0; i < PAIRS; i++){
+            blackhole.consume(hexagon.getNextColorIndex(leftColors[i], rightColors[i]));
+        }
+    }
+
+    @Benchmark
+    public Hexagon construct(){
+        return new Hexagon(1, 0.5);
+    }
+}
@@ -0,0 +1,230 @@
+package puzzle.pascalian.pascalianpuzzle;
+
+import javafx.application.Platform;
+import javafx.event.Event;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.control.Slider;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.stage.Stage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of the real UI without a display. Boots Main on the
+ * headless Monocle platform with software rendering, then:
+ *   - clicks random Hexagons and measures the time until the propagation in
+ *     BoardView.updateBoard has finished and the next pulse has been laid out,
+ *   - drags the board size slider across its range and measures the time
+ *     until each new board has been laid out,
+ *   - records the layout time of every pulse (CSS and layout, not rendering)
+ *     and the interval between pulses.
+ * The results are written as a JSON report for before/after comparisons.
+ *
+ * Run with:
+ *   java -cp benchmarks/target/benchmarks.jar puzzle.pascalian.pascalianpuzzle.UiLatencyBenchmark
+ *        [clicks] [animation speed 0-1] [report file]
+ */
+public class UiLatencyBenchmark {
+
+    private final static int DEFAULT_CLICKS = 50;
+    private final static double DEFAULT_ANIMATION_SPEED = 0.1; // the slider's initial value
+    private final static String DEFAULT_REPORT_FILE = "ui-latency-report.json";
+    private final static long SETTLE_TIMEOUT_SECONDS = 120;
+
+    private Scene scene;
+    private final ArrayList<Long> layoutNanos = new ArrayList<>();
+    private final ArrayList<Long> frameIntervalNanos = new ArrayList<>();
+    private long pulseStart;
+    private volatile CountDownLatch nextPulse;
+
+    public static void main(String[] args) throws Exception {
+        int clicks = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CLICKS;
+        double animationSpeed = args.length > 1 ? Double.parseDouble(args[1]) : DEFAULT_ANIMATION_SPEED;
+        String reportFile = args.length > 2 ? args[2] : DEFAULT_REPORT_FILE;
+
+        System.setProperty("glass.platform", "Monocle");
+        System.setProperty("monocle.platform", "Headless");
+        System.setProperty("prism.order", "sw");
+
+        UiLatencyBenchmark benchmark = new UiLatencyBenchmark();
+        benchmark.boot();
+        String report = benchmark.run(clicks, animationSpeed);
+        Files.writeString(Path.of(reportFile), report);
+        System.out.println(report);
+        Platform.exit();
+    }
+
+    /**
+     * Starts the FX platform and shows the Main stage.
+     */
+    private void boot() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        Platform.startup(() -> {
+            try {
+                Stage stage = new Stage();
+                new Main().start(stage);
+                scene = stage.getScene();
+                scene.addPreLayoutPulseListener(this::pulseStarted);
+                scene.addPostLayoutPulseListener(this::pulseEnded);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            started.countDown();
+        });
+        started.await();
+        waitForPulse();
+    }
+
+    private String run(int clicks, double animationSpeed) throws Exception {
+        Slider[] sliders = onFxThread(() -> findNodes(scene.getRoot(), Slider.class).toArray(new Slider[0]));
+        Slider animationSpeedSlider = sliders[0];
+        Slider sizeSlider = sliders[1];
+        onFxThread(() -> { animationSpeedSlider.setValue(animationSpeed); return null; });
+
+        // Size slider drag, one step at a time across the whole range
+        ArrayList<Long> resizeNanos = new ArrayList<>();
+        int minSize = (int) sizeSlider.getMin();
+        int maxSize = (int) sizeSlider.getMax();
+        for(int size = minSize; size <= maxSize; size++){
+            int newSize = size;
+            long start = System.nanoTime();
+            onFxThread(() -> { sizeSlider.setValue(newSize); return null; });
+            waitForSettled();
+            resizeNanos.add(System.nanoTime() - start);
+        }
+
+        // Clicks on random hexagons of the largest board
+        clearPulses();
+        ArrayList<Long> clickNanos = new ArrayList<>();
+        Random random = new Random(42);
+        for(int c = 0; c < clicks; c++){
+            Hexagon[] hexagons = onFxThread(() -> findNodes(scene.getRoot(), Hexagon.class).stream()
+                    .filter(hexagon -> hexagon.getColorIndex() != BoardController.NOT_A_COLOR)
+                    .toArray(Hexagon[]::new));
+            Hexagon hexagon = hexagons[random.nextInt(hexagons.length)];
+            long start = System.nanoTime();
+            onFxThread(() -> { click(hexagon); return null; });
+            waitForSettled();
+            clickNanos.add(System.nanoTime() - start);
+        }
+
+        // The pulse samples belong to the FX thread
+        String pulses = onFxThread(() -> "  \"layout\": " + summarize(layoutNanos) + ",\n"
+                + "  \"frameInterval\": " + summarize(frameIntervalNanos) + "\n");
+        return "{\n"
+                + "  \"boardSize\": " + maxSize + ",\n"
+                + "  \"animationSpeed\": " + animationSpeed + ",\n"
+                + "  \"clickToSettled\": " + summarize(clickNanos) + ",\n"
+                + "  \"resizeToSettled\": " + summarize(resizeNanos) + ",\n"
+                + pulses
+                + "}\n";
+    }
+
+    /**
+     * Fires a left click on a node the same way a mouse would.
+     * @param node the node to click.
+     */
+    private void click(Node node){
+        Event.fireEvent(node, new MouseEvent(MouseEvent.MOUSE_CLICKED, 1, 1, 1, 1, MouseButton.PRIMARY, 1,
+                false, false, false, false, true, false, false, true, false, true, null));
+    }
+
+    /**
+     * Waits until the board has stopped updating and one more pulse has been laid out.
+     */
+    private void waitForSettled() throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SETTLE_TIMEOUT_SECONDS);
+        while(BoardView.isUpdating()){
+            if(System.nanoTime() > deadline){
+                throw new IllegalStateException("Board did not settle");
+            }
+            Thread.sleep(0, 100_000);
+        }
+        waitForPulse();
+    }
+
+    private void waitForPulse() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        nextPulse = latch;
+        Platform.runLater(Platform::requestNextPulse);
+        if(!latch.await(SETTLE_TIMEOUT_SECONDS, TimeUnit.SECONDS)){
+            throw new IllegalStateException("No pulse");
+        }
+    }
+
+    private void pulseStarted(){
+        long now = System.nanoTime();
+        if(pulseStart != 0){
+            frameIntervalNanos.add(now - pulseStart);
+        }
+        pulseStart = now;
+    }
+
+    private void pulseEnded(){
+        layoutNanos.add(System.nanoTime() - pulseStart);
+        CountDownLatch latch = nextPulse;
+        if(latch != null){
+            latch.countDown();
+        }
+    }
+
+    private void clearPulses() throws Exception {
+        onFxThread(() -> {
+            layoutNanos.clear();
+            frameIntervalNanos.clear();
+            pulseStart = 0;
+            return null;
+        });
+    }
+
+    private static <T> T onFxThread(Callable<T> callable) throws Exception {
+        FutureTask<T> task = new FutureTask<>(callable);
+        Platform.runLater(task);
+        return task.get();
+    }
+
+    private static <T extends Node> ArrayList<T> findNodes(Node root, Class<T> type){
+        ArrayList<T> found = new ArrayList<>();
+        if(type.isInstance(root)){
+            found.add(type.cast(root));
+        }
+        if(root instanceof Parent){
+            for(Node child : ((Parent) root).getChildrenUnmodifiable()){
+                found.addAll(findNodes(child, type));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @param nanos the samples in nanoseconds.
+     * @return a JSON object with the sample count and percentiles in milliseconds.
+     */
+    private static String summarize(ArrayList<Long> nanos){
+        long[] sorted = nanos.stream().mapToLong(Long::longValue).sorted().toArray();
+        if(sorted.length == 0){
+            return "{\"count\": 0}";
+        }
+        double mean = Arrays.stream(sorted).average().orElse(0) / 1_000_000.0;
+        return String.format("{\"count\": %d, \"meanMs\": %.3f, \"p50Ms\": %.3f, \"p95Ms\": %.3f, \"p99Ms\": %.3f, \"maxMs\": %.3f}",
+                sorted.length, mean, percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99),
+                sorted[sorted.length - 1] / 1_000_000.0);
+    }
+
+    private static double percentile(long[] sorted, double percentile){
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1_000_000.0;
+    }
+}
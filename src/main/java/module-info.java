@@ -2,6 +2,8 @@ module puzzle.pascalian.pascalianpuzzle {
     requires javafx.controls;
     requires javafx.fxml;
     requires javafx.graphics;
+    requires jdk.httpserver;
+    requires jdk.jfr;
 
 
     opens puzzle.pascalian.pascalianpuzzle to javafx.fxml;
@@ -0,0 +1,128 @@
+package puzzle.pascalian.pascalianpuzzle;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects apex requests for small starting rows and answers them in
+ * batches with a single BoardModel.computeApexColors call. A batch is
+ * sent when it is full or when the oldest request has waited for the
+ * batch window.
+ */
+public class ApexBatcher {
+
+    private final static int MAX_BATCH_SIZE = 256;
+    private final static int MAX_QUEUED_REQUESTS = 4096;
+    private final static long BATCH_WINDOW_MICROS = 500;
+
+    private final ColorRule rule;
+    private final BlockingQueue<ApexRequest> queue;
+    private final Thread batchThread;
+    private volatile boolean shutDown;
+
+    /**
+     * A single queued starting row and the future its apex color completes.
+     */
+    private record ApexRequest(int[] startingRow, CompletableFuture<Integer> apexColor){}
+
+    /**
+     * Constructor. Starts the batching thread.
+     * @param rule the rule every batched starting row is computed with.
+     */
+    public ApexBatcher(ColorRule rule){
+        this.rule = rule;
+        queue = new ArrayBlockingQueue<>(MAX_QUEUED_REQUESTS);
+        batchThread = new Thread(this::runBatches, "apex-batcher");
+        batchThread.setDaemon(true);
+        batchThread.start();
+    }
+
+    /**
+     * Queues a starting row for the next batch. If the queue is full the
+     * apex is calculated on the calling thread instead.
+     * @param startingRow the color indices of the starting row, none transparent.
+     * @return a future completed with the apex color index, or completed
+     *         exceptionally if the batcher is shut down before answering it.
+     */
+    protected CompletableFuture<Integer> submit(int[] startingRow){
+        ApexRequest request = new ApexRequest(startingRow, new CompletableFuture<>());
+        if(!queue.offer(request)){
+            request.apexColor().complete(BoardModel.computeApexColor(startingRow, rule));
+        }
+        if(shutDown){ // may have been queued after the last drain
+            rejectQueued();
+        }
+        return request.apexColor();
+    }
+
+    /**
+     * Stops the batching thread. Requests still queued are completed exceptionally,
+     * so no caller waits on them forever.
+     */
+    protected void shutdown(){
+        shutDown = true;
+        batchThread.interrupt();
+        rejectQueued();
+    }
+
+    private void rejectQueued(){
+        ApexRequest request;
+        while((request = queue.poll()) != null){
+            reject(request);
+        }
+    }
+
+    private static void reject(ApexRequest request){
+        request.apexColor().completeExceptionally(new IllegalStateException("The apex batcher is shut down"));
+    }
+
+    private void runBatches(){
+        ArrayList<ApexRequest> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        try {
+            while(!Thread.currentThread().isInterrupted()){
+                // Waiting for the first request, then filling the batch until the window closes
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(BATCH_WINDOW_MICROS);
+                while(batch.size() < MAX_BATCH_SIZE){
+                    long remaining = deadline - System.nanoTime();
+                    ApexRequest request = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if(request == null){ break; }
+                    batch.add(request);
+                }
+                completeBatch(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // Requests taken for a batch that was never sent, completed ones are left as they are
+            for(ApexRequest request : batch){
+                reject(request);
+            }
+            rejectQueued();
+        }
+    }
+
+    private void completeBatch(ArrayList<ApexRequest> batch){
+        // Grouping rows of the same length so they share coefficients
+        batch.sort(Comparator.comparingInt(request -> request.startingRow().length));
+        int[][] startingRows = new int[batch.size()][];
+        for(int i = 0; i < batch.size(); i++){
+            startingRows[i] = batch.get(i).startingRow();
+        }
+        try {
+            int[] apexColors = BoardModel.computeApexColors(startingRows, rule);
+            for(int i = 0; i < batch.size(); i++){
+                batch.get(i).apexColor().complete(apexColors[i]);
+            }
+        } catch (RuntimeException e) {
+            for(ApexRequest request : batch){
+                request.apexColor().completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -32,6 +32,16 @@ public class BoardController {
      * @return true if the given index is in the middle of the starting row.
      */
     protected boolean checkIfMiddleIndex(int index){
+        return checkIfMiddleIndex(index, startingRowLength);
+    }
+
+    /**
+     * Checks if the given index is the middle of a starting row of the given length.
+     * @param index the index to check
+     * @param startingRowLength the number of hexagons in the starting row
+     * @return true if the given index is in the middle of the starting row.
+     */
+    protected static boolean checkIfMiddleIndex(int index, int startingRowLength){
         boolean isMiddle = false;
         int iHalf = (startingRowLength / 2);
         double dHalf = (double) startingRowLength / 2.0;
@@ -0,0 +1,81 @@
+package puzzle.pascalian.pascalianpuzzle;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Custom JFR events for the board. Record them with, for example:
+ *   java -XX:StartFlightRecording=filename=board.jfr ...
+ * and open the recording in JDK Mission Control under "Pascalian Puzzle".
+ */
+public final class BoardEvents {
+
+    private BoardEvents(){}
+
+    @Name("puzzle.pascalian.SetupBoard")
+    @Label("Setup Board")
+    @Category("Pascalian Puzzle")
+    public static class SetupBoardEvent extends Event {
+        @Label("Starting Row Length")
+        int startingRowLength;
+        @Label("Pattern Board")
+        boolean pattern;
+        @Label("Nodes Created")
+        int nodesCreated;
+    }
+
+    @Name("puzzle.pascalian.AddRow")
+    @Label("Add Row")
+    @Category("Pascalian Puzzle")
+    public static class AddRowEvent extends Event {
+        @Label("Row")
+        int row;
+        @Label("Nodes Created")
+        int nodesCreated;
+    }
+
+    @Name("puzzle.pascalian.SetRowColors")
+    @Label("Set Row Colors")
+    @Category("Pascalian Puzzle")
+    public static class SetRowColorsEvent extends Event {
+        @Label("Row")
+        int row;
+        @Label("Cells Recomputed")
+        int cellsRecomputed;
+        @Label("Cells Changed")
+        int cellsChanged;
+    }
+
+    @Name("puzzle.pascalian.UpdateBoard")
+    @Label("Update Board")
+    @Category("Pascalian Puzzle")
+    public static class UpdateBoardEvent extends Event {
+        @Label("First Row")
+        int firstRow;
+        @Label("Cells Recomputed")
+        int cellsRecomputed;
+        @Label("Cells Changed")
+        int cellsChanged;
+        @Label("Compute Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long computeNanos;
+    }
+
+    /**
+     * An FX pulse of the scene. The event lasts from the pre-layout to the post-layout
+     * listener, the CSS and layout time of the pulse, not its rendering.
+     */
+    @Name("puzzle.pascalian.Pulse")
+    @Label("FX Pulse Layout")
+    @Category("Pascalian Puzzle")
+    public static class PulseEvent extends Event {
+        @Label("Frame Interval")
+        @Timespan(Timespan.NANOSECONDS)
+        long frameIntervalNanos;
+        @Label("Frames Dropped")
+        int framesDropped;
+    }
+}
@@ -0,0 +1,175 @@
+package puzzle.pascalian.pascalianpuzzle;
+
+import javafx.scene.Scene;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects timings and counters from the board: board setups, added rows,
+ * propagation after a click, and the layout and frame intervals of FX pulses. Latencies keep the
+ * most recent samples so percentiles follow what the board is doing now.
+ * Every measurement is also emitted as a JFR event from BoardEvents.
+ */
+public final class BoardMetrics {
+
+    private final static int SAMPLE_COUNT = 1024;
+    private final static long FRAME_NANOS = 16_666_667; // 60 fps
+    private final static long IDLE_NANOS = 100_000_000; // longer gaps mean the scene was idle, not slow
+
+    private final static LatencySamples setupSamples = new LatencySamples();
+    private final static LatencySamples propagationSamples = new LatencySamples();
+    private final static LatencySamples layoutSamples = new LatencySamples();
+    private final static LatencySamples frameIntervalSamples = new LatencySamples();
+
+    private final static LongAdder nodesCreated = new LongAdder();
+    private final static LongAdder cellsRecomputed = new LongAdder();
+    private final static LongAdder cellsChanged = new LongAdder();
+    private final static LongAdder framesDropped = new LongAdder();
+
+    private static long lastPulseStart;
+    private static BoardEvents.PulseEvent pulseEvent;
+
+    private BoardMetrics(){}
+
+    /**
+     * The most recent latency samples of one kind, in nanoseconds.
+     */
+    private static class LatencySamples {
+        private final long[] samples = new long[SAMPLE_COUNT];
+        private int next;
+        private int count;
+
+        synchronized void record(long nanos){
+            samples[next] = nanos;
+            next = (next + 1) % SAMPLE_COUNT;
+            count = Math.min(count + 1, SAMPLE_COUNT);
+        }
+
+        synchronized double getPercentileMillis(double percentile){
+            if(count == 0){ return 0; }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+            return sorted[Math.max(index, 0)] / 1_000_000.0;
+        }
+
+        synchronized void clear(){
+            next = 0;
+            count = 0;
+        }
+    }
+
+    /**
+     * Records a complete board setup.
+     * @param startNanos the System.nanoTime() the setup started at.
+     * @param nodes the number of hexagons created.
+     */
+    protected static void recordSetup(long startNanos, int nodes){
+        setupSamples.record(System.nanoTime() - startNanos);
+        nodesCreated.add(nodes);
+    }
+
+    /**
+     * Records the propagation of a change through the board.
+     * @param computeNanos the time spent computing colors, without animation pauses.
+     * @param recomputed the number of hexagons whose color was recomputed.
+     * @param changed the number of hexagons that changed color.
+     */
+    protected static void recordPropagation(long computeNanos, int recomputed, int changed){
+        propagationSamples.record(computeNanos);
+        cellsRecomputed.add(recomputed);
+        cellsChanged.add(changed);
+    }
+
+    /**
+     * Measures the FX pulses of a scene: the layout time, from the scene's pre-layout
+     * to its post-layout listener, so CSS and layout but not rendering, and the
+     * interval between pulses, which covers the whole pulse. An interval of more
+     * than one and a half frames counts the missing frames as dropped.
+     * @param scene the scene to watch.
+     */
+    protected static void watchScene(Scene scene){
+        scene.addPreLayoutPulseListener(BoardMetrics::pulseStarted);
+        scene.addPostLayoutPulseListener(BoardMetrics::pulseEnded);
+    }
+
+    private static void pulseStarted(){
+        long now = System.nanoTime();
+        pulseEvent = new BoardEvents.PulseEvent();
+        pulseEvent.begin();
+        if(lastPulseStart != 0){
+            long interval = now - lastPulseStart;
+            if(interval < IDLE_NANOS){
+                frameIntervalSamples.record(interval);
+                pulseEvent.frameIntervalNanos = interval;
+                if(interval > FRAME_NANOS * 3 / 2){
+                    int dropped = (int) (interval / FRAME_NANOS) - 1;
+                    pulseEvent.framesDropped = Math.max(dropped, 1);
+                    framesDropped.add(pulseEvent.framesDropped);
+                }
+            }
+        }
+        lastPulseStart = now;
+    }
+
+    private static void pulseEnded(){
+        layoutSamples.record(System.nanoTime() - lastPulseStart);
+        pulseEvent.commit();
+    }
+
+    public static double getSetupPercentile(double percentile){
+        return setupSamples.getPercentileMillis(percentile);
+    }
+
+    public static double getPropagationPercentile(double percentile){
+        return propagationSamples.getPercentileMillis(percentile);
+    }
+
+    public static double getLayoutPercentile(double percentile){
+        return layoutSamples.getPercentileMillis(percentile);
+    }
+
+    public static double getFrameIntervalPercentile(double percentile){
+        return frameIntervalSamples.getPercentileMillis(percentile);
+    }
+
+    public static long getNodesCreated(){
+        return nodesCreated.sum();
+    }
+
+    public static long getCellsRecomputed(){
+        return cellsRecomputed.sum();
+    }
+
+    public static long getCellsChanged(){
+        return cellsChanged.sum();
+    }
+
+    public static long getFramesDropped(){
+        return framesDropped.sum();
+    }
+
+    /**
+     * Clears every sample and counter.
+     */
+    public static void reset(){
+        setupSamples.clear();
+        propagationSamples.clear();
+        layoutSamples.clear();
+        frameIntervalSamples.clear();
+        nodesCreated.reset();
+        cellsRecomputed.reset();
+        cellsChanged.reset();
+        framesDropped.reset();
+    }
+
+    /**
+     * @return a one line summary of the current latency percentiles, in milliseconds.
+     */
+    public static String getSummary(){
+        return String.format("Propagation p50 %.2f p95 %.2f p99 %.2f | Layout p50 %.2f p95 %.2f | Dropped %d",
+                getPropagationPercentile(50), getPropagationPercentile(95), getPropagationPercentile(99),
+                getLayoutPercentile(50), getLayoutPercentile(95), getFramesDropped());
+    }
+}
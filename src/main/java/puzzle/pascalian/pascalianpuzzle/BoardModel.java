@@ -0,0 +1,279 @@
+package puzzle.pascalian.pascalianpuzzle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Headless model of a board. Holds the color index of every hexagon in the
+ * same row-major order used by the BoardController, and computes the colors
+ * of the triangle without creating any JavaFX nodes.
+ *
+ * For linear rules, such as the Pascalian rule where a child is always
+ * -(left + right) mod 3, the color of any cell can also be found directly
+ * from the starting row with binomial coefficients, which is used for the
+ * apex and single cells.
+ */
+public class BoardModel {
+
+    private final int startingRowLength;
+    private final int[] colorIndices;
+    private final ColorRule rule;
+
+    /**
+     * Constructor. Computes every row of the triangle below the given starting
+     * row with the active rule.
+     * @param startingRow the color indices of the starting row
+     *                    (0-Blue, 1-Red, 2-Yellow, or -1 for transparent).
+     */
+    public BoardModel(int[] startingRow){
+        this(startingRow, ColorRule.getActiveRule());
+    }
+
+    /**
+     * Constructor. Computes every row of the triangle below the given starting row.
+     * @param startingRow the color indices of the starting row, or -1 for transparent.
+     * @param rule the rule giving the color of a child from its parents.
+     */
+    public BoardModel(int[] startingRow, ColorRule rule){
+        this.rule = rule;
+        startingRowLength = startingRow.length;
+        colorIndices = new int[getCellCount(startingRowLength)];
+        Arrays.fill(colorIndices, BoardController.NOT_A_COLOR);
+        System.arraycopy(startingRow, 0, colorIndices, 0, startingRowLength);
+        propagate(1);
+    }
+
+    /**
+     * Creates a starting row of random colors. The same seed always gives the same row.
+     * @param length the number of hexagons in the starting row.
+     * @param seed the seed of the random colors.
+     * @param rule the rule giving the number of colors.
+     * @return the color indices of the starting row.
+     * @see StartingRowGenerator
+     */
+    protected static int[] createRandomStartingRow(int length, long seed, ColorRule rule){
+        return StartingRowGenerator.createRow(length, seed, rule.getColorCount());
+    }
+
+    /**
+     * Creates the pattern starting row: the middle hexagon(s) one color, the rest another.
+     * @param length the number of hexagons in the starting row.
+     * @param rule the rule giving the number of colors.
+     * @return the color indices of the starting row.
+     */
+    protected static int[] createPatternStartingRow(int length, ColorRule rule){
+        int[] startingRow = new int[length];
+        for(int i = 0; i < length; i++){
+            startingRow[i] = BoardController.checkIfMiddleIndex(i, length)
+                    ? rule.getColorCount() - 2
+                    : rule.getColorCount() - 1;
+        }
+        return startingRow;
+    }
+
+    /**
+     * @param startingRowLength the number of hexagons in the starting row.
+     * @return the number of hexagons in the whole triangle.
+     */
+    protected static int getCellCount(int startingRowLength){
+        return startingRowLength * (startingRowLength + 1) / 2;
+    }
+
+    /**
+     * Calculates the index of the first hexagon of a row.
+     * @param row the row to find the start of.
+     * @return the index of the first hexagon in the row.
+     */
+    protected int getRowStart(int row){
+        return row * startingRowLength - row * (row - 1) / 2;
+    }
+
+    /**
+     * Recomputes every row from the given row to the bottom of the triangle.
+     * @param fromRow the first row to recompute (the starting row is never recomputed).
+     * @return the number of hexagons that changed color.
+     */
+    protected int propagate(int fromRow){
+        int changed = 0;
+        for(int row = Math.max(fromRow, 1); row < startingRowLength; row++){
+            int parentStart = getRowStart(row - 1);
+            int rowStart = getRowStart(row);
+            for(int i = 0; i < startingRowLength - row; i++){
+                int colorIndex = rule.getNextColorIndex(colorIndices[parentStart + i],
+                        colorIndices[parentStart + i + 1], colorIndices[rowStart + i]);
+                if(colorIndex != colorIndices[rowStart + i]){
+                    colorIndices[rowStart + i] = colorIndex;
+                    changed++;
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Sets the color of a single hexagon and recomputes the rows below it.
+     * @param row the row of the hexagon.
+     * @param col the position of the hexagon in its row.
+     * @param colorIndex the new color index.
+     * @return the number of hexagons below the changed one that changed color.
+     */
+    protected int setColor(int row, int col, int colorIndex){
+        colorIndices[getRowStart(row) + col] = colorIndex;
+        return propagate(row + 1);
+    }
+
+    /**
+     * Sets the color of a single hexagon without recomputing the rows below it.
+     * @param index the index of the hexagon, counting row by row from the starting row.
+     * @param colorIndex the new color index.
+     */
+    protected void setColorFromIndex(int index, int colorIndex){
+        colorIndices[index] = colorIndex;
+    }
+
+    protected int getColor(int row, int col){
+        return colorIndices[getRowStart(row) + col];
+    }
+
+    protected int getColorFromIndex(int index){
+        return colorIndices[index];
+    }
+
+    /**
+     * @param row the row to copy.
+     * @return a copy of the color indices of the row.
+     */
+    protected int[] getRow(int row){
+        int rowStart = getRowStart(row);
+        return Arrays.copyOfRange(colorIndices, rowStart, rowStart + startingRowLength - row);
+    }
+
+    protected int getApexColor(){
+        return colorIndices[colorIndices.length - 1];
+    }
+
+    protected int getStartingRowLength(){
+        return startingRowLength;
+    }
+
+    protected int getCellCount(){
+        return colorIndices.length;
+    }
+
+    protected ColorRule getRule(){
+        return rule;
+    }
+
+    /**
+     * Calculates the color of a single cell directly from the starting row. Linear
+     * rules only look at the cells above it, other rules compute the rows above it.
+     * @param startingRow the color indices of the starting row, none transparent.
+     * @param row the row of the cell.
+     * @param col the position of the cell in its row.
+     * @param rule the rule giving the color of a child from its parents.
+     * @return the color index of the cell.
+     */
+    protected static int computeColor(int[] startingRow, int row, int col, ColorRule rule){
+        if(rule.isLinear()){
+            return dot(rule.getCoefficients(row), startingRow, col, rule.getColorCount());
+        }
+        int[] window = Arrays.copyOfRange(startingRow, col, col + row + 1);
+        rule.advanceRow(window, window.length, row);
+        return window[0];
+    }
+
+    /**
+     * Calculates the color of the bottom hexagon directly from the starting row.
+     * @param startingRow the color indices of the starting row, none transparent.
+     * @param rule the rule giving the color of a child from its parents.
+     * @return the color index of the apex.
+     */
+    protected static int computeApexColor(int[] startingRow, ColorRule rule){
+        return computeColor(startingRow, startingRow.length - 1, 0, rule);
+    }
+
+    /**
+     * Calculates the apex color of many starting rows in one call. For linear rules,
+     * rows of the same length share one coefficient vector, so a batch costs one
+     * dot product per row.
+     * @param startingRows the starting rows, none transparent.
+     * @param rule the rule giving the color of a child from its parents.
+     * @return the apex color index of each starting row.
+     */
+    protected static int[] computeApexColors(int[][] startingRows, ColorRule rule){
+        int[] apexColors = new int[startingRows.length];
+        int[] coefficients = new int[0];
+        for(int i = 0; i < startingRows.length; i++){
+            if(!rule.isLinear()){
+                apexColors[i] = computeApexColor(startingRows[i], rule);
+                continue;
+            }
+            int rows = startingRows[i].length - 1;
+            if(coefficients.length != rows + 1){
+                coefficients = rule.getCoefficients(rows);
+            }
+            apexColors[i] = dot(coefficients, startingRows[i], 0, rule.getColorCount());
+        }
+        return apexColors;
+    }
+
+    /**
+     * Calculates a single row of the triangle, keeping only one row in memory.
+     * @param startingRow the color indices of the starting row.
+     * @param row the row to calculate.
+     * @param rule the rule giving the color of a child from its parents.
+     * @return the color indices of the row.
+     */
+    protected static int[] computeRow(int[] startingRow, int row, ColorRule rule){
+        int[] current = Arrays.copyOf(startingRow, startingRow.length);
+        rule.advanceRow(current, current.length, row);
+        return Arrays.copyOf(current, startingRow.length - row);
+    }
+
+    /**
+     * Finds every change of a single starting row hexagon that makes the apex the
+     * target color. Returns an empty array if the apex already is the target.
+     * @param startingRow the color indices of the starting row, none transparent.
+     * @param targetColorIndex the color the apex should become.
+     * @param rule a linear rule giving the color of a child from its parents.
+     * @return pairs of (starting row index, new color index), one pair per solution.
+     * @throws IllegalArgumentException if the rule is not linear.
+     */
+    protected static int[][] solve(int[] startingRow, int targetColorIndex, ColorRule rule){
+        if(!rule.isLinear()){
+            throw new IllegalArgumentException(rule.getName() + " is not a linear rule");
+        }
+        int colorCount = rule.getColorCount();
+        int difference = Math.floorMod(targetColorIndex - computeApexColor(startingRow, rule), colorCount);
+        if(difference == 0){
+            return new int[0][];
+        }
+        int[] coefficients = rule.getCoefficients(startingRow.length - 1);
+        ArrayList<int[]> solutions = new ArrayList<>();
+        for(int i = 0; i < coefficients.length; i++){
+            if(coefficients[i] != 0){
+                // The colors are a field, so the shift is difference / coefficient
+                int shift = difference * inverse(coefficients[i], colorCount) % colorCount;
+                solutions.add(new int[] {i, (startingRow[i] + shift) % colorCount});
+            }
+        }
+        return solutions.toArray(new int[0][]);
+    }
+
+    private static int inverse(int value, int prime){
+        for(int candidate = 1; candidate < prime; candidate++){
+            if(value * candidate % prime == 1){
+                return candidate;
+            }
+        }
+        throw new ArithmeticException(value + " has no inverse mod " + prime);
+    }
+
+    private static int dot(int[] coefficients, int[] row, int offset, int colorCount){
+        long sum = 0;
+        for(int i = 0; i < coefficients.length; i++){
+            sum += coefficients[i] * row[offset + i];
+        }
+        return (int) (sum % colorCount);
+    }
+}
@@ -0,0 +1,119 @@
+package puzzle.pascalian.pascalianpuzzle;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Computes the boards the user is likely to ask for next on a background thread,
+ * so pressing Reset or Pattern only has to copy the colors of a finished
+ * BoardModel onto the hexagons.
+ *
+ * Two boards are kept: the random board of the seed the next Reset will use, and
+ * the Pattern board. Both are for one size and rule; asking for a board of any
+ * other size or rule is a miss, and prefetching for a new size or rule drops the
+ * old boards. A board still being computed when it is asked for is also a miss,
+ * the caller computes it itself rather than wait on the FX thread.
+ */
+public class BoardPrefetcher {
+
+    private final ExecutorService worker;
+
+    // Guarded by this
+    private int size;
+    private ColorRule rule;
+    private long randomSeed;
+    private Future<BoardModel> randomBoard;
+    private Future<BoardModel> patternBoard;
+
+    /**
+     * Constructor. The worker is a low priority daemon thread, it only runs while the rest of the app is idle.
+     */
+    public BoardPrefetcher(){
+        worker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "board-prefetcher");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts computing the random board of a seed and the Pattern board, unless already done.
+     * @param size the number of hexagons in the starting row.
+     * @param rule the rule giving the color of a child from its parents.
+     * @param seed the seed of the next random board.
+     */
+    protected synchronized void prefetch(int size, ColorRule rule, long seed){
+        if(size != this.size || rule != this.rule){
+            invalidate();
+            this.size = size;
+            this.rule = rule;
+        }
+        if(randomBoard == null || randomSeed != seed){
+            if(randomBoard != null){
+                randomBoard.cancel(false);
+            }
+            randomSeed = seed;
+            randomBoard = worker.submit(() -> new BoardModel(BoardModel.createRandomStartingRow(size, seed, rule), rule));
+        }
+        if(patternBoard == null){
+            patternBoard = worker.submit(() -> new BoardModel(BoardModel.createPatternStartingRow(size, rule), rule));
+        }
+    }
+
+    /**
+     * Takes the prefetched random board, which is not kept since its seed is only used once.
+     * @param size the number of hexagons in the starting row.
+     * @param rule the rule giving the color of a child from its parents.
+     * @param seed the seed of the random board.
+     * @return the board, or null if it is not ready.
+     */
+    protected synchronized BoardModel takeRandom(int size, ColorRule rule, long seed){
+        if(randomSeed != seed){ return null; }
+        BoardModel board = getIfReady(randomBoard, size, rule);
+        if(randomBoard != null){
+            randomBoard.cancel(false);
+            randomBoard = null;
+        }
+        return board;
+    }
+
+    /**
+     * Gets the prefetched Pattern board, which is kept for the next time.
+     * @param size the number of hexagons in the starting row.
+     * @param rule the rule giving the color of a child from its parents.
+     * @return the board, or null if it is not ready.
+     */
+    protected synchronized BoardModel getPattern(int size, ColorRule rule){
+        return getIfReady(patternBoard, size, rule);
+    }
+
+    /**
+     * Drops every prefetched board, e.g. after the board size changed.
+     */
+    protected synchronized void invalidate(){
+        if(randomBoard != null){
+            randomBoard.cancel(false);
+            randomBoard = null;
+        }
+        if(patternBoard != null){
+            patternBoard.cancel(false);
+            patternBoard = null;
+        }
+        rule = null;
+    }
+
+    private BoardModel getIfReady(Future<BoardModel> board, int size, ColorRule rule){
+        if(board == null || size != this.size || rule != this.rule || !board.isDone() || board.isCancelled()){
+            return null;
+        }
+        try {
+            return board.get();
+        } catch (InterruptedException | ExecutionException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
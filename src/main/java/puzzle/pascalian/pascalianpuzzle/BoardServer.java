@@ -0,0 +1,336 @@
+package puzzle.pascalian.pascalianpuzzle;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A local HTTP server answering board queries for other tools on the same host.
+ * The server only listens on the loopback address. Every endpoint takes the
+ * starting row as a string of color indices, e.g. row=0120, and optionally the
+ * name of a ColorRule, e.g. rule=Pascal%20mod%202. The Pascalian rule is the default.
+ *
+ *   /apex?row=...                 the color of the bottom hexagon
+ *   /cell?row=...&amp;r=..&amp;c=..       the color of a single hexagon
+ *   /row?row=...&amp;r=..              the colors of a whole row
+ *   /solve?row=...&amp;target=..       every single hexagon change that makes the apex the target color,
+ *                                 with the fewest clicks needed
+ *
+ * Identical queries that arrive while one is being answered share its answer,
+ * and Pascalian apex queries for small rows are answered in batches by an ApexBatcher.
+ *
+ * @see BoardModel
+ */
+public class BoardServer {
+
+    private final static int DEFAULT_PORT = 8080;
+    private final static int MAX_ROW_LENGTH = 10_000;
+    private final static int MAX_BATCHED_ROW_LENGTH = 256;
+    private final static int MAX_QUEUED_EXCHANGES = 10_000;
+    private final static int CONNECTION_BACKLOG = 4096;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ApexBatcher apexBatcher;
+    private final ConcurrentHashMap<String, CompletableFuture<String>> inFlight;
+    private final AtomicLong answeredQueries = new AtomicLong();
+
+    /**
+     * Constructor. Binds the server to the loopback address without starting it.
+     * @param port the port to listen on, or 0 for any free port.
+     * @throws IOException if the port cannot be bound.
+     */
+    public BoardServer(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECTION_BACKLOG);
+        // A fixed pool with a bounded queue keeps memory bounded under thousands of sessions;
+        // when the queue is full new exchanges are turned away with a 503, see dispatch
+        int threads = Runtime.getRuntime().availableProcessors() * 4;
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(MAX_QUEUED_EXCHANGES), new ThreadPoolExecutor.AbortPolicy());
+        apexBatcher = new ApexBatcher(ColorRule.PASCALIAN);
+        inFlight = new ConcurrentHashMap<>();
+
+        // No server executor: the dispatcher only hands each exchange over to the pool
+        server.createContext("/apex", exchange -> dispatch(exchange, this::apex));
+        server.createContext("/cell", exchange -> dispatch(exchange, this::cell));
+        server.createContext("/row", exchange -> dispatch(exchange, this::row));
+        server.createContext("/solve", exchange -> dispatch(exchange, this::solve));
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        BoardServer boardServer = new BoardServer(port);
+        boardServer.start();
+        System.out.println("Board server listening on http://localhost:" + boardServer.getPort());
+    }
+
+    protected void start(){
+        server.start();
+    }
+
+    /**
+     * Stops the server, waiting at most the given number of seconds for open exchanges.
+     * @param delaySeconds the maximum time to wait.
+     */
+    protected void stop(int delaySeconds){
+        server.stop(delaySeconds);
+        // Failing the queued apex requests first, join() ignores the interrupts of shutdownNow
+        apexBatcher.shutdown();
+        executor.shutdownNow();
+    }
+
+    protected int getPort(){
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return the number of queries computed, not counting those that shared the answer of an identical one.
+     */
+    protected long getAnsweredQueryCount(){
+        return answeredQueries.get();
+    }
+
+    /**
+     * A query answered with a JSON body.
+     */
+    private interface Query {
+        String answer(HashMap<String, String> parameters);
+    }
+
+    /**
+     * Hands an exchange over to the pool. Runs on the dispatcher thread, which must never
+     * wait on a query, so when the pool is saturated the exchange is answered with a 503.
+     * @param exchange the exchange to answer.
+     * @param query the query for the exchange's endpoint.
+     */
+    private void dispatch(HttpExchange exchange, Query query) throws IOException {
+        try {
+            executor.execute(() -> {
+                try {
+                    handle(exchange, query);
+                } catch (IOException e) {
+                    // The client went away, the exchange is already closed
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            try (exchange) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                send(exchange, 503, error("The server is busy, try again later"));
+            }
+        }
+    }
+
+    /**
+     * Answers an exchange, sharing the answer with any identical query already in flight.
+     * @param exchange the exchange to answer.
+     * @param query the query for the exchange's endpoint.
+     */
+    private void handle(HttpExchange exchange, Query query) throws IOException {
+        try (exchange) {
+            if(!exchange.getRequestMethod().equals("GET")){
+                send(exchange, 405, error("Only GET is supported"));
+                return;
+            }
+            String rawQuery = exchange.getRequestURI().getRawQuery();
+            String key = exchange.getRequestURI().getPath() + "?" + rawQuery;
+
+            CompletableFuture<String> answer = new CompletableFuture<>();
+            CompletableFuture<String> shared = inFlight.putIfAbsent(key, answer);
+            if(shared == null){ // First query of its kind, answering it for everyone waiting
+                try {
+                    answeredQueries.incrementAndGet();
+                    answer.complete(query.answer(parseQuery(rawQuery)));
+                } catch (RuntimeException e) {
+                    answer.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(key, answer);
+                }
+                shared = answer;
+            }
+
+            try {
+                send(exchange, 200, shared.join());
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if(cause instanceof IllegalArgumentException){
+                    send(exchange, 400, error(cause.getMessage()));
+                }else{
+                    send(exchange, 500, error(String.valueOf(cause)));
+                }
+            }
+        }
+    }
+
+    private String apex(HashMap<String, String> parameters){
+        ColorRule rule = getRule(parameters);
+        int[] startingRow = getStartingRow(parameters, rule);
+        int apexColor = rule == ColorRule.PASCALIAN && startingRow.length <= MAX_BATCHED_ROW_LENGTH
+                ? apexBatcher.submit(startingRow).join()
+                : BoardModel.computeApexColor(startingRow, rule);
+        return "{\"apex\":" + apexColor + "}";
+    }
+
+    private String cell(HashMap<String, String> parameters){
+        ColorRule rule = getRule(parameters);
+        int[] startingRow = getStartingRow(parameters, rule);
+        int row = getInt(parameters, "r", 0, startingRow.length - 1);
+        int col = getInt(parameters, "c", 0, startingRow.length - 1 - row);
+        return "{\"color\":" + BoardModel.computeColor(startingRow, row, col, rule) + "}";
+    }
+
+    private String row(HashMap<String, String> parameters){
+        ColorRule rule = getRule(parameters);
+        int[] startingRow = getStartingRow(parameters, rule);
+        int row = getInt(parameters, "r", 0, startingRow.length - 1);
+        return "{\"row\":\"" + toDigits(BoardModel.computeRow(startingRow, row, rule)) + "\"}";
+    }
+
+    private String solve(HashMap<String, String> parameters){
+        ColorRule rule = getRule(parameters);
+        int[] startingRow = getStartingRow(parameters, rule);
+        int target = getInt(parameters, "target", 0, rule.getColorCount() - 1);
+        int[][] solutions = BoardModel.solve(startingRow, target, rule);
+
+        StringBuilder json = new StringBuilder("{\"solutions\":[");
+        int minClicks = 0;
+        for(int i = 0; i < solutions.length; i++){
+            if(i > 0){ json.append(','); }
+            // A left click moves one color forward, a right click one color back
+            int shift = Math.floorMod(solutions[i][1] - startingRow[solutions[i][0]], rule.getColorCount());
+            int clicks = Math.min(shift, rule.getColorCount() - shift);
+            minClicks = i == 0 ? clicks : Math.min(minClicks, clicks);
+            json.append("{\"index\":").append(solutions[i][0])
+                    .append(",\"color\":").append(solutions[i][1])
+                    .append(",\"clicks\":").append(clicks).append('}');
+        }
+        return json.append("],\"clicks\":").append(minClicks).append('}').toString();
+    }
+
+    /**
+     * Parses the optional rule parameter.
+     * @param parameters the query parameters.
+     * @return the named rule, or the Pascalian rule if none is given.
+     * @throws IllegalArgumentException if there is no rule with the given name.
+     */
+    private ColorRule getRule(HashMap<String, String> parameters){
+        String name = parameters.get("rule");
+        if(name == null){
+            return ColorRule.PASCALIAN;
+        }
+        String decodedName = URLDecoder.decode(name, StandardCharsets.UTF_8);
+        ColorRule rule = ColorRule.forName(decodedName);
+        if(rule == null){
+            throw new IllegalArgumentException("Unknown rule: " + decodedName);
+        }
+        return rule;
+    }
+
+    /**
+     * Parses the starting row parameter.
+     * @param parameters the query parameters.
+     * @param rule the rule giving the number of colors.
+     * @return the color indices of the starting row.
+     * @throws IllegalArgumentException if the row is missing, too long or has colors the rule doesn't.
+     */
+    private int[] getStartingRow(HashMap<String, String> parameters, ColorRule rule){
+        String digits = parameters.get("row");
+        if(digits == null || digits.isEmpty()){
+            throw new IllegalArgumentException("Missing parameter: row");
+        }
+        if(digits.length() > MAX_ROW_LENGTH){
+            throw new IllegalArgumentException("Row longer than " + MAX_ROW_LENGTH);
+        }
+        int[] startingRow = new int[digits.length()];
+        for(int i = 0; i < startingRow.length; i++){
+            int colorIndex = digits.charAt(i) - '0';
+            if(colorIndex < 0 || colorIndex >= rule.getColorCount()){
+                throw new IllegalArgumentException("Unexpected color: " + digits.charAt(i));
+            }
+            startingRow[i] = colorIndex;
+        }
+        return startingRow;
+    }
+
+    private int getInt(HashMap<String, String> parameters, String name, int min, int max){
+        String value = parameters.get(name);
+        if(value == null){
+            throw new IllegalArgumentException("Missing parameter: " + name);
+        }
+        try {
+            int parsed = Integer.parseInt(value);
+            if(parsed < min || parsed > max){
+                throw new IllegalArgumentException(name + " must be between " + min + " and " + max);
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + name);
+        }
+    }
+
+    private static HashMap<String, String> parseQuery(String rawQuery){
+        HashMap<String, String> parameters = new HashMap<>();
+        if(rawQuery == null){ return parameters; }
+        for(String pair : rawQuery.split("&")){
+            int split = pair.indexOf('=');
+            if(split > 0){
+                parameters.put(pair.substring(0, split), pair.substring(split + 1));
+            }
+        }
+        return parameters;
+    }
+
+    private static String toDigits(int[] row){
+        StringBuilder digits = new StringBuilder(row.length);
+        for(int colorIndex : row){
+            digits.append(colorIndex);
+        }
+        return digits.toString();
+    }
+
+    private static String error(String message){
+        StringBuilder json = new StringBuilder("{\"error\":\"");
+        for(int i = 0; i < message.length(); i++){
+            char c = message.charAt(i);
+            switch(c){
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if(c < 0x20){
+                        json.append(String.format("\\u%04x", (int) c));
+                    }else{
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        return json.append("\"}").toString();
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,621 @@
+package puzzle.pascalian.pascalianpuzzle;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Color statistics of a whole triangle: how many hexagons of each color it has,
+ * the color histogram of any row, and how many rows are a single solid color.
+ * The statistics are found without building the triangle, so they work for
+ * boards far too large to hold in memory.
+ *
+ *   - The Pattern board, for linear rules where both parents weigh the same
+ *     (such as the Pascalian rule): every hexagon is the background color plus a
+ *     binomial coefficient C(r, j) times the change in the middle. By Lucas'
+ *     theorem C(r, j) mod k is the product of the binomials of the base-k digits
+ *     of r and j, so counting hexagons is a digit by digit count over r and j,
+ *     taking time in the number of digits of the size.
+ *   - Starting rows that repeat with a short period, for any rule: every row is
+ *     then periodic too, and the periodic rows themselves repeat after a while,
+ *     so only one cycle of them is counted and the rest are multiplied out.
+ *   - Any other starting row is counted row by row, keeping one row in memory.
+ *
+ * A solid row only has solid rows below it, so the solid rows are always the
+ * bottom rows of the triangle and are found by a binary search on row histograms.
+ *
+ * @see BoardModel
+ */
+public class BoardStatistics {
+
+    private final static long MAX_SIZE = 4_000_000_000L; // keeps the hexagon count within a long
+    private final static int MAX_CYCLE_WORK = 1 << 22;   // rows times period searched for a cycle
+    private final static int MIN_PERIOD_REPEATS = 2;
+    private final static int MAX_STREAMED_SIZE = 1 << 16;   // largest board counted row by row
+    private final static long DEFAULT_SIZE = 1_000_000_000L;
+
+    private final long size;
+    private final int colorCount;
+    private final String method;
+    private final long[] colorCounts;
+    private final RowCounter rowCounter;
+    private final long solidRowCount;
+
+    /**
+     * Counts the colors of a single row.
+     */
+    private interface RowCounter {
+        long[] countRow(long row);
+    }
+
+    private BoardStatistics(long size, ColorRule rule, String method, long[] colorCounts, RowCounter rowCounter){
+        this.size = size;
+        this.colorCount = rule.getColorCount();
+        this.method = method;
+        this.colorCounts = colorCounts;
+        this.rowCounter = rowCounter;
+        this.solidRowCount = size - findFirstSolidRow();
+    }
+
+    /**
+     * Finds the statistics of the board below a starting row, using the fastest
+     * method that fits the row.
+     * @param startingRow the color indices of the starting row, none transparent.
+     * @param rule the rule giving the color of a child from its parents.
+     * @return the statistics of the board.
+     * @throws IllegalArgumentException if the row is empty or has a transparent hexagon.
+     */
+    public static BoardStatistics forStartingRow(int[] startingRow, ColorRule rule){
+        for(int colorIndex : startingRow){
+            if(colorIndex < 0 || colorIndex >= rule.getColorCount()){
+                throw new IllegalArgumentException("Statistics need every hexagon to have a color");
+            }
+        }
+        if(startingRow.length == 0){
+            throw new IllegalArgumentException("The starting row is empty");
+        }
+        if(hasPatternClosedForm(rule)
+                && Arrays.equals(startingRow, BoardModel.createPatternStartingRow(startingRow.length, rule))){
+            return forPattern(startingRow.length, rule);
+        }
+        int period = getPeriod(startingRow);
+        if(period * MIN_PERIOD_REPEATS <= startingRow.length){
+            BoardStatistics periodic = countPeriodic(Arrays.copyOf(startingRow, period), startingRow.length, rule);
+            if(periodic != null){
+                return periodic;
+            }
+        }
+        return countStreamed(startingRow, rule);
+    }
+
+    /**
+     * Finds the statistics of a Pattern board, see BoardModel.createPatternStartingRow.
+     * @param size the number of hexagons in the starting row, up to 4 billion.
+     * @param rule a linear rule where both parents have the same weight.
+     * @return the statistics of the board.
+     * @throws IllegalArgumentException if the size is out of range or the rule has no closed form.
+     */
+    public static BoardStatistics forPattern(long size, ColorRule rule){
+        checkSize(size);
+        if(!hasPatternClosedForm(rule)){
+            throw new IllegalArgumentException(rule.getName() + " has no closed form for the Pattern board");
+        }
+        return countPattern(size, rule);
+    }
+
+    /**
+     * Finds the statistics of a board whose starting row repeats a period of colors.
+     * @param period the colors repeated along the starting row.
+     * @param size the number of hexagons in the starting row, up to 4 billion.
+     * @param rule the rule giving the color of a child from its parents.
+     * @return the statistics of the board.
+     * @throws IllegalArgumentException if the size is out of range, or the rows take
+     *                                  too long to repeat and the board is too large to count row by row.
+     */
+    public static BoardStatistics forPeriodicRow(int[] period, long size, ColorRule rule){
+        checkSize(size);
+        BoardStatistics periodic = countPeriodic(period, size, rule);
+        if(periodic != null){
+            return periodic;
+        }
+        if(size > MAX_STREAMED_SIZE){
+            throw new IllegalArgumentException("The rows of this period take too long to repeat");
+        }
+        int[] startingRow = new int[(int) size];
+        for(int i = 0; i < startingRow.length; i++){
+            startingRow[i] = period[i % period.length];
+        }
+        return countStreamed(startingRow, rule);
+    }
+
+    public static void main(String[] args){
+        long size = args.length > 0 ? Long.parseLong(args[0]) : DEFAULT_SIZE;
+        String seed = args.length > 1 ? args[1] : "pattern";
+        ColorRule rule = args.length > 2 ? ColorRule.forName(args[2]) : ColorRule.PASCALIAN;
+        if(rule == null){
+            throw new IllegalArgumentException("Unknown rule: " + args[2]);
+        }
+
+        long start = System.nanoTime();
+        BoardStatistics statistics;
+        if(seed.equals("pattern")){
+            statistics = forPattern(size, rule);
+        }else if(seed.startsWith("period=")){
+            statistics = forPeriodicRow(seed.substring(7).chars().map(c -> c - '0').toArray(), size, rule);
+        }else{
+            statistics = forStartingRow(BoardModel.createRandomStartingRow((int) size, Long.parseLong(seed), rule), rule);
+        }
+        System.out.printf("%s in %.3f ms%n", statistics, (System.nanoTime() - start) / 1_000_000.0);
+    }
+
+    public long getSize(){
+        return size;
+    }
+
+    public long getCellCount(){
+        return size * (size + 1) / 2;
+    }
+
+    /**
+     * @param colorIndex the color to count.
+     * @return the number of hexagons of the color in the whole triangle.
+     */
+    public long getColorCount(int colorIndex){
+        return colorCounts[colorIndex];
+    }
+
+    /**
+     * @return the number of hexagons of each color in the whole triangle.
+     */
+    public long[] getColorCounts(){
+        return colorCounts.clone();
+    }
+
+    /**
+     * @param row the row to count, 0 being the starting row.
+     * @return the number of hexagons of each color in the row.
+     */
+    public long[] getRowHistogram(long row){
+        if(row < 0 || row >= size){
+            throw new IllegalArgumentException("Row " + row + " is not on the board");
+        }
+        return rowCounter.countRow(row);
+    }
+
+    /**
+     * @return the number of rows with every hexagon the same color, always the bottom rows.
+     */
+    public long getSolidRowCount(){
+        return solidRowCount;
+    }
+
+    /**
+     * @return how the statistics were found: "pattern", "periodic" or "streamed".
+     */
+    public String getMethod(){
+        return method;
+    }
+
+    @Override
+    public String toString(){
+        return "size " + size + " (" + method + "): colors " + Arrays.toString(colorCounts)
+                + ", solid rows " + solidRowCount;
+    }
+
+    private long findFirstSolidRow(){
+        long low = 0;
+        long high = size - 1; // the apex alone is always solid
+        while(low < high){
+            long middle = (low + high) >>> 1;
+            if(isSolid(middle)){
+                high = middle;
+            }else{
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    private boolean isSolid(long row){
+        for(long count : rowCounter.countRow(row)){
+            if(count == size - row){ return true; }
+        }
+        return false;
+    }
+
+    private static void checkSize(long size){
+        if(size < 1 || size > MAX_SIZE){
+            throw new IllegalArgumentException("Size must be between 1 and " + MAX_SIZE);
+        }
+    }
+
+    private static boolean hasPatternClosedForm(ColorRule rule){
+        return rule.isLinear() && rule.getLeftWeight() == rule.getRightWeight() && rule.getLeftWeight() != 0;
+    }
+
+    /**
+     * The Pattern board. With weight w for both parents, the hexagon c of row r is
+     *   background * (2w)^r + (middle - background) * w^r * C(r + e, n/2 - c)
+     * where e is 1 for an even size and 0 for an odd one: the two middle hexagons
+     * of an even row add up by Pascal's rule to the binomial of the row below.
+     * Only the nonzero binomials need counting, grouped by their value and by
+     * r mod (k - 1), which is all the powers of w depend on.
+     */
+    private static BoardStatistics countPattern(long size, ColorRule rule){
+        int k = rule.getColorCount();
+        int weight = rule.getLeftWeight();
+        int background = k - 1;
+        int change = k - 1; // middle color k - 2 minus the background
+        int even = size % 2 == 0 ? 1 : 0;
+        long half = size / 2;
+        long maxDistance = size - 1 - half + even; // r + e - j for the leftmost hexagon of a row
+
+        RowCounter rowCounter = row -> {
+            long[] histogram = new long[k];
+            long binomialRow = row + even;
+            long[] byValue = countBinomials(binomialRow, Math.max(0, binomialRow - maxDistance),
+                    Math.min(half, binomialRow), k);
+            int rowBackground = background * powMod(2 * weight, row, k) % k;
+            int scale = change * powMod(weight, row, k) % k;
+            long nonzero = 0;
+            for(int value = 1; value < k; value++){
+                histogram[(rowBackground + scale * value) % k] += byValue[value];
+                nonzero += byValue[value];
+            }
+            histogram[rowBackground] += size - row - nonzero;
+            return histogram;
+        };
+
+        // The starting row, then every row below it at once
+        long[] colorCounts = rowCounter.countRow(0);
+        if(size > 1){
+            long[][] below = countBinomialPairs(size - 1 + even, half, maxDistance, even, k);
+            long[][] atStart = countBinomialPairs(even, half, maxDistance, even, k);
+            int residues = k - 1;
+            for(int residue = 0; residue < residues; residue++){
+                // Rows 1 to size - 1 with row mod (k - 1) == residue, all powers are periodic from row 1
+                long firstRow = residue == 0 ? residues : residue;
+                if(firstRow > size - 1){ continue; }
+                long rows = (size - 1 - firstRow) / residues + 1;
+                long cells = rows * size - (rows * firstRow + residues * (rows * (rows - 1) / 2));
+
+                int rowBackground = background * powMod(2 * weight, firstRow, k) % k;
+                int scale = change * powMod(weight, firstRow, k) % k;
+                long nonzero = 0;
+                for(int value = 1; value < k; value++){
+                    long count = below[residue][value] - atStart[residue][value];
+                    colorCounts[(rowBackground + scale * value) % k] += count;
+                    nonzero += count;
+                }
+                colorCounts[rowBackground] += cells - nonzero;
+            }
+        }
+        return new BoardStatistics(size, rule, "pattern", colorCounts, rowCounter);
+    }
+
+    /**
+     * Counts the pairs (R, j) with R up to maxRow, j up to maxColumn and R - j up to
+     * maxDistance whose binomial C(R, j) mod k is not zero. The digits of R and j are
+     * chosen from the least significant up, remembering whether the digits so far
+     * exceed each bound. Lucas' theorem makes the binomial the product of the digit
+     * binomials, and a digit of j above the digit of R makes it zero, so R - j never borrows.
+     * @param maxRow the largest R.
+     * @param maxColumn the largest j.
+     * @param maxDistance the largest R - j.
+     * @param rowOffset subtracted from R to give the board row, for grouping.
+     * @param k the prime number of colors.
+     * @return the counts indexed by (R - rowOffset) mod (k - 1) and binomial value.
+     */
+    private static long[][] countBinomialPairs(long maxRow, long maxColumn, long maxDistance, int rowOffset, int k){
+        int residues = k - 1;
+        int[][] digitBinomials = getDigitBinomials(k);
+        // State: above each of the three bounds so far, binomial product (1 to k - 1), digit sum mod (k - 1)
+        int flagStates = 8;
+        long[] counts = new long[flagStates * residues * residues];
+        counts[stateIndex(0, 1, 0, residues)] = 1;
+
+        int digits = countDigits(Math.max(maxRow, Math.max(maxColumn, maxDistance)), k);
+        for(int d = 0; d < digits; d++){
+            int rowDigit = digit(maxRow, d, k);
+            int columnDigit = digit(maxColumn, d, k);
+            int distanceDigit = digit(maxDistance, d, k);
+            long[] next = new long[counts.length];
+            for(int flags = 0; flags < flagStates; flags++){
+                for(int product = 1; product < k; product++){
+                    for(int sum = 0; sum < residues; sum++){
+                        long count = counts[stateIndex(flags, product, sum, residues)];
+                        if(count == 0){ continue; }
+                        for(int r = 0; r < k; r++){
+                            for(int j = 0; j <= r; j++){
+                                int nextFlags = compareDigit(flags, 4, r, rowDigit)
+                                        | compareDigit(flags, 2, j, columnDigit)
+                                        | compareDigit(flags, 1, r - j, distanceDigit);
+                                int nextProduct = product * digitBinomials[r][j] % k;
+                                next[stateIndex(nextFlags, nextProduct, (sum + r) % residues, residues)] += count;
+                            }
+                        }
+                    }
+                }
+            }
+            counts = next;
+        }
+
+        long[][] pairs = new long[residues][k];
+        for(int product = 1; product < k; product++){
+            for(int sum = 0; sum < residues; sum++){
+                pairs[Math.floorMod(sum - rowOffset, residues)][product] += counts[stateIndex(0, product, sum, residues)];
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * Counts the j from low to high by the value of C(row, j) mod k.
+     * @return the counts indexed by binomial value.
+     */
+    private static long[] countBinomials(long row, long low, long high, int k){
+        long[] counts = countBinomialsUpTo(row, high, k);
+        long[] below = countBinomialsUpTo(row, low - 1, k);
+        for(int value = 0; value < k; value++){
+            counts[value] -= below[value];
+        }
+        return counts;
+    }
+
+    private static long[] countBinomialsUpTo(long row, long max, int k){
+        long[] byValue = new long[k];
+        if(max < 0){ return byValue; }
+        int[][] digitBinomials = getDigitBinomials(k);
+        // State: above the bound so far, binomial product (0 to k - 1)
+        long[] counts = new long[2 * k];
+        counts[1] = 1;
+        int digits = countDigits(Math.max(row, max), k);
+        for(int d = 0; d < digits; d++){
+            int rowDigit = digit(row, d, k);
+            int maxDigit = digit(max, d, k);
+            long[] next = new long[counts.length];
+            for(int above = 0; above < 2; above++){
+                for(int product = 0; product < k; product++){
+                    long count = counts[above * k + product];
+                    if(count == 0){ continue; }
+                    for(int j = 0; j < k; j++){
+                        int nextAbove = j > maxDigit ? 1 : j < maxDigit ? 0 : above;
+                        int nextProduct = j > rowDigit ? 0 : product * digitBinomials[rowDigit][j] % k;
+                        next[nextAbove * k + nextProduct] += count;
+                    }
+                }
+            }
+            counts = next;
+        }
+        System.arraycopy(counts, 0, byValue, 0, k);
+        return byValue;
+    }
+
+    private static int stateIndex(int flags, int product, int sum, int residues){
+        return (flags * residues + product - 1) * residues + sum;
+    }
+
+    // Sets the flag's bit if the digit is above the bound's digit, clears it if below, keeps it if equal
+    private static int compareDigit(int flags, int flag, int digit, int boundDigit){
+        if(digit > boundDigit){ return flag; }
+        if(digit < boundDigit){ return 0; }
+        return flags & flag;
+    }
+
+    private static int[][] getDigitBinomials(int k){
+        int[][] binomials = new int[k][k];
+        for(int n = 0; n < k; n++){
+            for(int j = 0; j <= n; j++){
+                binomials[n][j] = ColorRule.binomialModPrime(n, j, k);
+            }
+        }
+        return binomials;
+    }
+
+    private static int countDigits(long value, int base){
+        int digits = 1;
+        while(value >= base){
+            value /= base;
+            digits++;
+        }
+        return digits;
+    }
+
+    private static int digit(long value, int position, int base){
+        for(int i = 0; i < position; i++){
+            value /= base;
+        }
+        return (int) (value % base);
+    }
+
+    private static int powMod(int base, long exponent, int modulus){
+        long result = 1 % modulus;
+        long power = Math.floorMod(base, modulus);
+        while(exponent > 0){
+            if((exponent & 1) == 1){
+                result = result * power % modulus;
+            }
+            power = power * power % modulus;
+            exponent >>= 1;
+        }
+        return (int) result;
+    }
+
+    /**
+     * A starting row repeating a period: every row is the first hexagons of the
+     * same period moved down a row around a ring. The rings repeat after a first
+     * mu rows with a cycle of lambda rows, found by remembering every ring seen.
+     * A row of length L is L / P whole rings plus the start of one more.
+     * @return the statistics, or null if the rings take too long to repeat.
+     */
+    private static BoardStatistics countPeriodic(int[] period, long size, ColorRule rule){
+        int k = rule.getColorCount();
+        int length = period.length;
+        ArrayList<int[]> rings = new ArrayList<>();
+        HashMap<ByteBuffer, Integer> seen = new HashMap<>();
+        int[] ring = period.clone();
+        long mu;
+        long lambda;
+        while(true){
+            if(rings.size() == size){ // the board ends before the rings repeat
+                mu = size;
+                lambda = 0;
+                break;
+            }
+            Integer first = seen.putIfAbsent(toKey(ring), rings.size());
+            if(first != null){
+                mu = first;
+                lambda = rings.size() - first;
+                break;
+            }
+            if((long) (rings.size() + 1) * length > MAX_CYCLE_WORK){
+                return null;
+            }
+            rings.add(ring);
+            ring = stepRing(ring, rule);
+        }
+
+        long finalMu = mu;
+        long finalLambda = lambda;
+        RowCounter rowCounter = row -> {
+            int[] rowRing = rings.get((int) (row < finalMu ? row : finalMu + (row - finalMu) % finalLambda));
+            return countRingRow(rowRing, size - row, k);
+        };
+
+        // The rows before the cycle one by one
+        BigInteger[] totals = new BigInteger[k];
+        Arrays.fill(totals, BigInteger.ZERO);
+        for(long row = 0; row < mu; row++){
+            addTo(totals, rowCounter.countRow(row));
+        }
+        // Each ring of the cycle comes back every lambda rows, at row lengths stepping around the period
+        if(lambda > 0){
+            long cycleLength = lambda / gcd(lambda, length) * length; // lcm: both the ring and length mod P repeat
+            for(int offset = 0; offset < lambda; offset++){
+                int[] cycleRing = rings.get((int) (mu + offset));
+                long[] whole = new long[k];
+                int[][] prefixes = new int[length + 1][];
+                prefixes[0] = new int[k];
+                for(int i = 0; i < length; i++){
+                    prefixes[i + 1] = prefixes[i].clone();
+                    prefixes[i + 1][cycleRing[i]]++;
+                    whole[cycleRing[i]]++;
+                }
+                for(long first = mu + offset; first < mu + cycleLength && first < size; first += lambda){
+                    // Rows first, first + cycleLength, ... all have the same ring and the same length mod P
+                    long rows = (size - 1 - first) / cycleLength + 1;
+                    int partial = (int) ((size - first) % length);
+                    // Sum over those rows of the whole rings, (length of row - partial) / P
+                    BigInteger wholeRings = BigInteger.valueOf(rows).multiply(BigInteger.valueOf(size - first - partial))
+                            .subtract(BigInteger.valueOf(cycleLength).multiply(
+                                    BigInteger.valueOf(rows).multiply(BigInteger.valueOf(rows - 1)).shiftRight(1)))
+                            .divide(BigInteger.valueOf(length));
+                    for(int color = 0; color < k; color++){
+                        totals[color] = totals[color]
+                                .add(wholeRings.multiply(BigInteger.valueOf(whole[color])))
+                                .add(BigInteger.valueOf(rows).multiply(BigInteger.valueOf(prefixes[partial][color])));
+                    }
+                }
+            }
+        }
+
+        long[] colorCounts = new long[k];
+        for(int color = 0; color < k; color++){
+            colorCounts[color] = totals[color].longValueExact();
+        }
+        return new BoardStatistics(size, rule, "periodic", colorCounts, rowCounter);
+    }
+
+    private static long[] countRingRow(int[] ring, long rowLength, int k){
+        long[] histogram = new long[k];
+        long wholeRings = rowLength / ring.length;
+        int partial = (int) (rowLength % ring.length);
+        for(int i = 0; i < ring.length; i++){
+            histogram[ring[i]] += wholeRings + (i < partial ? 1 : 0);
+        }
+        return histogram;
+    }
+
+    private static int[] stepRing(int[] ring, ColorRule rule){
+        int[] next = new int[ring.length];
+        for(int i = 0; i < ring.length; i++){
+            next[i] = rule.getNextColorIndex(ring[i], ring[(i + 1) % ring.length], BoardController.NOT_A_COLOR);
+        }
+        return next;
+    }
+
+    private static ByteBuffer toKey(int[] ring){
+        byte[] bytes = new byte[ring.length];
+        for(int i = 0; i < ring.length; i++){
+            bytes[i] = (byte) ring[i];
+        }
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private static void addTo(BigInteger[] totals, long[] counts){
+        for(int color = 0; color < totals.length; color++){
+            totals[color] = totals[color].add(BigInteger.valueOf(counts[color]));
+        }
+    }
+
+    private static long gcd(long a, long b){
+        while(b != 0){
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /**
+     * The shortest period the row repeats, from the longest border of the row (KMP).
+     * @return the period, or the row length if it doesn't repeat.
+     */
+    private static int getPeriod(int[] row){
+        int[] border = new int[row.length];
+        for(int i = 1; i < row.length; i++){
+            int b = border[i - 1];
+            while(b > 0 && row[i] != row[b]){
+                b = border[b - 1];
+            }
+            border[i] = row[i] == row[b] ? b + 1 : 0;
+        }
+        return row.length - border[row.length - 1];
+    }
+
+    /**
+     * Any starting row, one row at a time. Keeps the histogram of every row.
+     */
+    private static BoardStatistics countStreamed(int[] startingRow, ColorRule rule){
+        int k = rule.getColorCount();
+        int size = startingRow.length;
+        int[] row = startingRow.clone();
+        int[] rowHistograms = new int[size * k];
+        long[] colorCounts = new long[k];
+        int[] histogram = new int[k];
+        for(int r = 0; r < size; r++){
+            int length = size - r;
+            Arrays.fill(histogram, 0);
+            // Count each hexagon while replacing it with its child, the last one has none
+            for(int i = 0; i < length - 1; i++){
+                histogram[row[i]]++;
+                row[i] = rule.getNextColorIndex(row[i], row[i + 1], BoardController.NOT_A_COLOR);
+            }
+            histogram[row[length - 1]]++;
+            for(int color = 0; color < k; color++){
+                rowHistograms[r * k + color] = histogram[color];
+                colorCounts[color] += histogram[color];
+            }
+        }
+        RowCounter rowCounter = r -> {
+            long[] rowHistogram = new long[k];
+            for(int color = 0; color < k; color++){
+                rowHistogram[color] = rowHistograms[(int) r * k + color];
+            }
+            return rowHistogram;
+        };
+        return new BoardStatistics(size, rule, "streamed", colorCounts, rowCounter);
+    }
+}
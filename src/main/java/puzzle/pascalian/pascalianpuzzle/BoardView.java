@@ -1,26 +1,63 @@
 package puzzle.pascalian.pascalianpuzzle;
 
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.beans.binding.Bindings;
+import javafx.beans.binding.DoubleBinding;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
 import javafx.collections.ListChangeListener;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
+import javafx.scene.Group;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.StackPane;
+import javafx.scene.transform.Scale;
 import java.util.ArrayList;
+import java.util.Queue;
 import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class BoardView implements ListChangeListener {
 
-    private double currentScale;
     private static int startingRowLength;
     private GridPane board;
+    private StackPane boardPane;
+    private DoubleProperty boardWidth;
+    private DoubleProperty boardHeight;
     private static BoardController boardController;
     private static ArrayList<Hexagon> hexagons;
     private static int rows;
     private static AtomicBoolean updating;
     private static Thread animationThread;
     private static int animationSleepMillis;
+    private static EditHistory history;
+    private static long seed;
+    private static long nextSeed;
+    private static Random seedSource;
+    private static BoardPrefetcher prefetcher;
+    private static ExecutorService rowBuilder;
+    private static AtomicInteger buildGeneration;
+    private static AnimationTimer rowAttacher;
+    private static volatile boolean building;
+    private static boolean propagateAfterBuild;
+    private static ColorRule builtRule; // the rule the hexagons were created with
+    private static boolean recoloring = true;
+    private static volatile boolean recordPropagation; // true until the propagation of a user edit starts
+    private static volatile boolean startingRowOnly;   // puzzles are solved by clicking the starting row
     private final static int MAX_ANIMATION_SLEEP_MILLIS = 1000;
+    private final static int HISTORY_DEPTH = 4096;
+    private final static double HEXAGON_SCALE = 1.0; // the whole board is scaled to the window instead
+    private final static double ROW_OVERLAP = 5;      // rows overlap so the hexagons interlock
+    private final static double BOARD_MARGIN = 20;
+    private final static int FIRST_PAINT_CELLS = 400;          // hexagons added before the board is first shown
+    private final static long FRAME_BUDGET_NANOS = 8_000_000;  // time per frame spent adding built rows
 
     /**
      * Constructor.
@@ -29,127 +66,396 @@ public class BoardView implements ListChangeListener {
     public BoardView(BoardController controller){
 
         board = new GridPane();
+        setupBoardPane();
         hexagons = new ArrayList<>();
         updating = new AtomicBoolean(false);
+        history = new EditHistory(HISTORY_DEPTH);
+        seedSource = new Random();
+        nextSeed = seedSource.nextLong();
+        prefetcher = new BoardPrefetcher();
+        buildGeneration = new AtomicInteger();
+        rowBuilder = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "board-builder");
+            thread.setDaemon(true);
+            return thread;
+        });
         boardController = controller;
         boardController.watchList(this);
 
-        // Getting initial board size and scale
+        // Getting initial board size
         startingRowLength = boardController.getStartingRowLength();
-        setScaleFromSize(startingRowLength);
 
         setupBoard();
 
         animationSleepMillis = 200;
     }
 
+    /**
+     * Sets up the pane holding the board. The hexagons are always created at the
+     * same size, and one Scale transform on the board fits it to the pane, so the
+     * board follows the window size without recreating any hexagon. The scale is
+     * taken from the size of the full triangle, known once the starting row is
+     * added, so it does not change while the rest of the rows are added.
+     */
+    private void setupBoardPane(){
+        boardWidth = new SimpleDoubleProperty(1);
+        boardHeight = new SimpleDoubleProperty(1);
+        boardPane = new StackPane(new Group(board));
+        boardPane.setPadding(new Insets(BOARD_MARGIN, BOARD_MARGIN, BOARD_MARGIN, BOARD_MARGIN));
+        boardPane.setMinSize(0, 0);
+
+        DoubleBinding fit = Bindings.createDoubleBinding(() -> {
+            double width = boardPane.getWidth() - 2 * BOARD_MARGIN;
+            double height = boardPane.getHeight() - 2 * BOARD_MARGIN;
+            if(width <= 0 || height <= 0){ return 1.0; } // not laid out yet
+            return Math.min(width / boardWidth.get(), height / boardHeight.get());
+        }, boardPane.widthProperty(), boardPane.heightProperty(), boardWidth, boardHeight);
+        Scale scale = new Scale();
+        scale.xProperty().bind(fit);
+        scale.yProperty().bind(fit);
+        board.getTransforms().add(scale);
+    }
+
+    /**
+     * Sets the unscaled size of the full triangle from its starting row: as wide as
+     * the row, and as tall as one row per hexagon plus the overlap of the last row.
+     * @param startingRow the starting row of hexagons.
+     */
+    private void setBoardSize(HBox startingRow){
+        boardWidth.set(startingRow.prefWidth(-1));
+        boardHeight.set(startingRow.prefHeight(-1) * startingRowLength + ROW_OVERLAP);
+    }
+
     /**
      * Sets the board to an initial state.
      */
     private void initBoard(){
         // Clearing row counter
         rows = 0;
+        propagateAfterBuild = false;
+        builtRule = ColorRule.getActiveRule();
         // Clearing arrays
         boardController.emptyIndices();
         hexagons.clear();
+        history.clear();
         // If first initialization, initializing the board, otherwise clear the board
         if(board == null) {
             board = new GridPane();
         }else{
             board.getChildren().clear();
         }
-        // Setting padding and alignment
-        board.setPadding(new Insets(20,20,20,20));
+        // Setting alignment
         board.setAlignment(Pos.CENTER);
 
     }
 
     /**
-     * Sets up the board. Initializes the board, adds the starting
-     * row and any remaining rows to complete the triangle.
+     * Sets up the board with a new random starting row, from the seed the
+     * prefetcher has been computing the board of.
      */
     protected void setupBoard(){
-        // Setting update flag
-        updating.compareAndSet(false, true);
+        long seed = nextSeed;
+        nextSeed = seedSource.nextLong();
+        setupBoard(seed);
+    }
 
-        initBoard();
-        addStartingRow(board);
-        for(int row = 1; row < startingRowLength; row++) {
-            addNextRow(board);
+    /**
+     * Sets up the board. If the hexagons of a board this size already exist they are
+     * recolored in place, from the prefetched board when it is ready. Otherwise the
+     * board is rebuilt, see buildBoard.
+     * @param seed the seed of the random starting row, the same seed gives the same board.
+     */
+    protected void setupBoard(long seed){
+        BoardView.seed = seed;
+        long startNanos = System.nanoTime();
+        BoardEvents.SetupBoardEvent event = new BoardEvents.SetupBoardEvent();
+        event.begin();
+        ColorRule rule = ColorRule.getActiveRule();
+
+        if(canRecolor()){
+            BoardModel model = prefetcher.takeRandom(startingRowLength, rule, seed);
+            if(model == null){
+                model = new BoardModel(BoardModel.createRandomStartingRow(startingRowLength, seed, rule), rule);
+            }
+            recolorBoard(model);
+            recordSetup(event, startNanos, false, 0);
+        }else{
+            buildBoard(event, startNanos, BoardModel.createRandomStartingRow(startingRowLength, seed, rule), false);
+        }
+        prefetcher.prefetch(startingRowLength, rule, nextSeed);
+    }
+
+    /**
+     * Sets up the board from a given starting row, such as one picked in the gallery,
+     * recoloring the existing hexagons or rebuilding the board the same way as setupBoard.
+     * @param startingRow the color indices of the starting row, as long as the current starting row.
+     * @throws IllegalArgumentException if the row is not the current board size.
+     */
+    protected void setupBoard(int[] startingRow){
+        if(startingRow.length != startingRowLength){
+            throw new IllegalArgumentException("Starting row of " + startingRow.length
+                    + " hexagons for a board of " + startingRowLength);
+        }
+        long startNanos = System.nanoTime();
+        BoardEvents.SetupBoardEvent event = new BoardEvents.SetupBoardEvent();
+        event.begin();
+
+        if(canRecolor()){
+            recolorBoard(new BoardModel(startingRow, ColorRule.getActiveRule()));
+            recordSetup(event, startNanos, false, 0);
+        }else{
+            buildBoard(event, startNanos, startingRow.clone(), false);
         }
-        // clearing update flag
-        updating.compareAndSet(true, false);
     }
+
     /**
-     * Sets up the board. Initializes the board, adds the starting
-     * row and any remaining rows to complete the triangle. The
-     * board resulting from this method will have a set color
-     * pattern after setup.
+     * Sets up the board with the pattern starting row, recoloring the
+     * existing hexagons or rebuilding the board the same way as setupBoard.
      */
     protected void setupSpecialBoard(){
+        long startNanos = System.nanoTime();
+        BoardEvents.SetupBoardEvent event = new BoardEvents.SetupBoardEvent();
+        event.begin();
+        ColorRule rule = ColorRule.getActiveRule();
+
+        if(canRecolor()){
+            BoardModel model = prefetcher.getPattern(startingRowLength, rule);
+            if(model == null){
+                model = new BoardModel(BoardModel.createPatternStartingRow(startingRowLength, rule), rule);
+            }
+            recolorBoard(model);
+            recordSetup(event, startNanos, true, 0);
+        }else{
+            buildBoard(event, startNanos, BoardModel.createPatternStartingRow(startingRowLength, rule), true);
+        }
+        prefetcher.prefetch(startingRowLength, rule, nextSeed);
+    }
+
+    /**
+     * Rebuilds the board. The starting row and the top rows are added straight away,
+     * a fixed number of hexagons whatever the size, so the board can be shown and
+     * clicked at once. The hexagons of the remaining rows are colored and created on
+     * the board-builder thread, and added a frame's budget at a time on the FX thread.
+     * Starting another build cancels this one. The board stays updating until the
+     * last row is added; clicks in the meantime propagate once it is.
+     * Off the FX thread, e.g. in benchmarks without a running toolkit, there are no
+     * frames to add rows in, so the whole board is built before returning.
+     * @param event the setup event, begun when the setup started.
+     * @param startNanos the System.nanoTime() the setup started at.
+     * @param colorIndices the color indices of the starting row.
+     * @param pattern true if the starting row is the pattern starting row.
+     */
+    private void buildBoard(BoardEvents.SetupBoardEvent event, long startNanos, int[] colorIndices, boolean pattern){
+        int generation = buildGeneration.incrementAndGet();
+        stopBuilding();
         // Setting update flag
         updating.compareAndSet(false, true);
+
         initBoard();
-        addSpecialStartingRow(board);
-        for(int row = 1; row < startingRowLength; row++) {
+        addStartingRow(board, colorIndices);
+        boolean progressive = Platform.isFxApplicationThread();
+        while(rows < startingRowLength
+                && (!progressive || hexagons.size() + startingRowLength - rows <= FIRST_PAINT_CELLS)){
             addNextRow(board);
         }
-        // Clearing update flag
-        updating.compareAndSet(true, false);
+        if(rows == startingRowLength){
+            finishBuilding(event, startNanos, pattern);
+            return;
+        }
+
+        int[] startingRow = new int[startingRowLength];
+        for(int i = 0; i < startingRowLength; i++){
+            startingRow[i] = boardController.getColorFromIndex(i);
+        }
+        ColorRule rule = ColorRule.getActiveRule();
+        int firstRow = rows;
+        Queue<HBox> builtRows = new ConcurrentLinkedQueue<>();
+        rowBuilder.execute(() -> createRows(startingRow, rule, firstRow, generation, builtRows));
+
+        building = true;
+        rowAttacher = new AnimationTimer() {
+            @Override
+            public void handle(long now){
+                long frameStart = System.nanoTime();
+                HBox nextRow;
+                while(System.nanoTime() - frameStart < FRAME_BUDGET_NANOS && (nextRow = builtRows.poll()) != null){
+                    attachRow(nextRow);
+                }
+                if(rows == startingRowLength){
+                    stopBuilding();
+                    finishBuilding(event, startNanos, pattern);
+                }
+            }
+        };
+        rowAttacher.start();
     }
 
     /**
-     * Creates a starting row of hexagons with a simple color pattern.
-     * The middle hexagon(s) are colored differently than the rest.
-     * @param pane the GridPane object to add the row to.
+     * Creates the rows of hexagons below the top rows, colored from the starting row.
+     * Runs on the board-builder thread; the nodes are not part of the scene until attached.
+     * @param generation the build the rows are for, creating stops once a newer build starts.
+     * @param builtRows the queue to put each finished row on, in order.
      */
-    private void addSpecialStartingRow(GridPane pane){
-        HBox startingRow = new HBox();
-        startingRow.setPadding(new Insets(0,0,-5 * currentScale,0)); // T R B L (bottom = -5 * SCALE to remove padding for next row down)
-
-        for(int i = 0; i < startingRowLength; i++) {
-            int colorIndex = 2; // default color of hexagons
+    private static void createRows(int[] startingRow, ColorRule rule, int firstRow,
+                                   int generation, Queue<HBox> builtRows){
+        BoardModel model = new BoardModel(startingRow, rule);
+        for(int row = firstRow; row < startingRow.length; row++){
+            if(buildGeneration.get() != generation){ return; }
+            HBox nextRow = new HBox();
+            nextRow.setAlignment(Pos.CENTER);
+            nextRow.setPadding(new Insets(0,0,-ROW_OVERLAP,0)); // T R B L
+            for(int i = 0; i < startingRow.length - row; i++){
+                Hexagon hexagon = new Hexagon(model.getColor(row, i), HEXAGON_SCALE);
+                hexagon.setRow(row);
+                nextRow.getChildren().add(hexagon);
+            }
+            builtRows.add(nextRow);
+        }
+    }
 
-            // Setting a middle hexagon(s) a different color
-            if(boardController.checkIfMiddleIndex(i)){
-                colorIndex = 1;
+    /**
+     * Adds a row created by createRows to the board. The colors are checked against the
+     * parents, which may have been clicked since the row was created.
+     * @param nextRow the row of hexagons to add.
+     */
+    private void attachRow(HBox nextRow){
+        BoardEvents.AddRowEvent event = new BoardEvents.AddRowEvent();
+        event.begin();
+        int startingParentIndex = boardController.getRowIndex(rows);
+        ColorRule rule = ColorRule.getActiveRule();
+        for(int i = 0; i < nextRow.getChildren().size(); i++){
+            Hexagon hexagon = (Hexagon) nextRow.getChildren().get(i);
+            int leftColorIndex = boardController.getColorFromIndex(startingParentIndex + i);
+            int rightColorIndex = boardController.getColorFromIndex(startingParentIndex + i + 1);
+            int colorIndex = rule.getNextColorIndex(leftColorIndex, rightColorIndex, BoardController.NOT_A_COLOR);
+            if(colorIndex != hexagon.getColorIndex()){
+                hexagon.setColor(colorIndex);
             }
-            // Creating the hexagon
-            Hexagon hexagon = new Hexagon(colorIndex, currentScale);
-            hexagon.setRow(0);
+            boardController.addColorIndex(colorIndex);
+            hexagon.setIndex(hexagons.size());
             hexagons.add(hexagon);
+        }
+        board.addRow(rows, nextRow);
 
-            // Updating the controller
-            boardController.addColorIndex(hexagon.getColorIndex());
+        event.row = rows;
+        event.nodesCreated = nextRow.getChildren().size();
+        event.commit();
+        rows++;
+    }
 
-            // Adding the hexagon to the HBox
-            startingRow.getChildren().add(hexagon);
+    /**
+     * Stops adding the rows of the current build, if any.
+     */
+    private static void stopBuilding(){
+        if(rowAttacher != null){
+            rowAttacher.stop();
+            rowAttacher = null;
         }
-        // Adding the starting row to the GridPane
-        pane.addRow(rows, startingRow);
-        // Setting current row state
-        rows = 1;
+        building = false;
     }
 
     /**
-     * Adds a row of starting hexagons to a GridPane. The colors
-     * of the hexagons are randomized.
-     * @param pane the GridPane to add the starting row to.
+     * Ends a build once every row is added: records it, and propagates any clicks made during it.
+     */
+    private void finishBuilding(BoardEvents.SetupBoardEvent event, long startNanos, boolean pattern){
+        recordSetup(event, startNanos, pattern, hexagons.size());
+        if(propagateAfterBuild){
+            propagateAfterBuild = false;
+            updateBoard();
+        }else{
+            // clearing update flag
+            updating.compareAndSet(true, false);
+        }
+    }
+
+    /**
+     * @return true if every hexagon of a board of the current size and rule exists and
+     *         no change is propagating, so a new board can be shown by recoloring them.
+     *         After a rule change the board is rebuilt, so the BoardController list is
+     *         emptied and its listeners start over with the new rule's colors.
+     */
+    private boolean canRecolor(){
+        return recoloring
+                && !updating.get()
+                && ColorRule.getActiveRule() == builtRule
+                && rows == startingRowLength
+                && hexagons.size() == BoardModel.getCellCount(startingRowLength);
+    }
+
+    /**
+     * Turns recoloring in place on or off. With it off, every setup rebuilds the
+     * board, e.g. for benchmarks measuring how long building a board takes.
+     * @param enabled true to recolor the existing hexagons when possible, the default.
      */
-    private void addStartingRow(GridPane pane){
-        Random random = new Random();
+    protected static void setRecoloring(boolean enabled){
+        recoloring = enabled;
+    }
+
+    /**
+     * Turns starting row only clicks on or off. With them on, clicks on the rows below
+     * the starting row are ignored, the rule the puzzles of PuzzleGenerator are played by.
+     * @param enabled true to ignore clicks below the starting row, false to allow every click, the default.
+     */
+    protected static void setStartingRowOnly(boolean enabled){
+        startingRowOnly = enabled;
+    }
+
+    /**
+     * @return true if clicks below the starting row are ignored.
+     */
+    protected static boolean isStartingRowOnly(){
+        return startingRowOnly;
+    }
+
+    /**
+     * Shows a computed board by recoloring the existing hexagons, without creating any nodes.
+     * @param model the board to show, the same size as the current board.
+     */
+    private void recolorBoard(BoardModel model){
+        updating.compareAndSet(false, true);
+        history.clear();
+        for(int index = 0; index < hexagons.size(); index++){
+            int colorIndex = model.getColorFromIndex(index);
+            hexagons.get(index).setColor(colorIndex);
+            if(boardController.getColorFromIndex(index) != colorIndex){
+                boardController.setColorIndex(index, colorIndex);
+            }
+        }
+        updating.compareAndSet(true, false);
+    }
+
+    /**
+     * Records a finished board setup in the BoardMetrics and as a JFR event.
+     * @param event the setup event, begun when the setup started.
+     * @param startNanos the System.nanoTime() the setup started at.
+     * @param pattern true if the board was set up with the pattern starting row.
+     * @param nodesCreated the number of hexagons created, 0 if the existing ones were recolored.
+     */
+    private void recordSetup(BoardEvents.SetupBoardEvent event, long startNanos, boolean pattern, int nodesCreated){
+        BoardMetrics.recordSetup(startNanos, nodesCreated);
+        event.startingRowLength = startingRowLength;
+        event.pattern = pattern;
+        event.nodesCreated = nodesCreated;
+        event.commit();
+    }
 
+    /**
+     * Adds a row of starting hexagons to a GridPane.
+     * @param pane the GridPane to add the starting row to.
+     * @param colorIndices the colors of the hexagons, random from a seed, the pattern, or picked in the gallery.
+     */
+    private void addStartingRow(GridPane pane, int[] colorIndices){
         // Setting up the HBox to hold the hexagons
         HBox startingRow = new HBox();
         startingRow.setAlignment(Pos.CENTER);
-        startingRow.setPadding(new Insets(0,0,-5 * currentScale,0)); // T R B L (bottom = -5 * SCALE to remove padding for next row down)
+        startingRow.setPadding(new Insets(0,0,-ROW_OVERLAP,0)); // T R B L (bottom = -ROW_OVERLAP to remove padding for next row down)
 
         for(int i = 0; i < startingRowLength; i++) {
-            // Getting random color
-            int colorIndex = random.nextInt(3);
+            int colorIndex = colorIndices[i];
             // Creating the hexagon
-            Hexagon hexagon = new Hexagon(colorIndex, currentScale);
+            Hexagon hexagon = new Hexagon(colorIndex, HEXAGON_SCALE);
             hexagon.setRow(0);
+            hexagon.setIndex(hexagons.size());
             hexagons.add(hexagon);
 
             // Updating the controller
@@ -160,6 +466,7 @@ public class BoardView implements ListChangeListener {
         }
         // Adding the starting row to the GridPane
         pane.addRow(rows, startingRow);
+        setBoardSize(startingRow);
         // Setting current row state
         rows = 1;
     }
@@ -172,11 +479,13 @@ public class BoardView implements ListChangeListener {
      */
     private void addNextRow(GridPane pane){
         if(!updating.get()){ return; }
+        BoardEvents.AddRowEvent event = new BoardEvents.AddRowEvent();
+        event.begin();
         int startingParentIndex = boardController.getRowIndex(rows);
 
         HBox nextRow = new HBox();
         nextRow.setAlignment(Pos.CENTER);
-        nextRow.setPadding(new Insets(0,0,-5 * currentScale,0)); // T R B L
+        nextRow.setPadding(new Insets(0,0,-ROW_OVERLAP,0)); // T R B L
 
         for(int i = 0; i < startingRowLength - rows; i++){
             int leftParent = startingParentIndex + i;
@@ -185,7 +494,7 @@ public class BoardView implements ListChangeListener {
             int rightColorIndex = boardController.getColorFromIndex(rightParent);
 
             // Creating a transparent hexagon
-            Hexagon hexagon = new Hexagon(BoardController.NOT_A_COLOR, currentScale);
+            Hexagon hexagon = new Hexagon(BoardController.NOT_A_COLOR, HEXAGON_SCALE);
             hexagon.setRow(rows);
 
             // Getting color based on parents
@@ -197,9 +506,14 @@ public class BoardView implements ListChangeListener {
 
             // Updating the controller
             boardController.addColorIndex(hexagon.getColorIndex());
+            hexagon.setIndex(hexagons.size());
             hexagons.add(hexagon);
         }
         pane.addRow(rows, nextRow);
+
+        event.row = rows;
+        event.nodesCreated = startingRowLength - rows;
+        event.commit();
         rows++;
     }
 
@@ -208,11 +522,28 @@ public class BoardView implements ListChangeListener {
      * accordingly. For rows other than the first, the parents are checked to determine the
      * color of each hexagon.
      * @param currentRow the row to set the correct colors on.
+     * @return the number of hexagons in the row that changed color.
+     */
+    protected static int setRowColors(int currentRow){
+        return setRowColors(currentRow, false);
+    }
+
+    /**
+     * Sets a single row of the board to the appropriate colors.
+     * @param currentRow the row to set the correct colors on.
+     * @param record true to add the changed hexagons to the last edit in the history.
+     * @return the number of hexagons in the row that changed color.
      */
-    protected static void setRowColors(int currentRow){
+    private static int setRowColors(int currentRow, boolean record){
+        BoardEvents.SetRowColorsEvent event = new BoardEvents.SetRowColorsEvent();
+        event.begin();
+        int cellsChanged = 0;
         if(currentRow == 0){ // Updating the first row doesn't require looking at parents
             for(int index = 0; index < startingRowLength; index++){
                 int colorIndex = hexagons.get(index).getColorIndex();
+                if(colorIndex != boardController.getColorFromIndex(index)){
+                    cellsChanged++;
+                }
                 boardController.setColorIndex(index, colorIndex);
             }
         }else { // All other rows, need to check parents for colors
@@ -240,16 +571,33 @@ public class BoardView implements ListChangeListener {
                 if (newColorIndex != oldColorIndex) {
                     boardController.setColorIndex(hexagonIndex, newColorIndex);
                     hexagons.get(hexagonIndex).setColor(newColorIndex);
+                    if(record){
+                        history.recordPropagated(hexagonIndex, oldColorIndex, newColorIndex);
+                    }
+                    cellsChanged++;
                 }
             }
         }
+        event.row = currentRow;
+        event.cellsRecomputed = startingRowLength - currentRow;
+        event.cellsChanged = cellsChanged;
+        event.commit();
+        return cellsChanged;
+    }
+
+    /**
+     * @return the pane holding the board, scaled to fit it.
+     */
+    protected Region getBoard(){
+        return boardPane;
     }
 
     /**
-     * @return the GridPane object representing the board.
+     * @param index the index of the hexagon, in the same order as the BoardController.
+     * @return the hexagon at the given index.
      */
-    protected GridPane getBoard(){
-        return board;
+    protected static Hexagon getHexagon(int index){
+        return hexagons.get(index);
     }
 
     /**
@@ -260,6 +608,63 @@ public class BoardView implements ListChangeListener {
             hexagon.setColor(-1);
         }
         boardController.clearBoard();
+        history.clear();
+    }
+
+    /**
+     * Records a color change made by the user so it can be undone.
+     * @param hexagon the hexagon that changed color.
+     * @param oldColorIndex the color of the hexagon before the change.
+     * @param secondary true for a right click, false for a left click.
+     */
+    protected static void recordEdit(Hexagon hexagon, int oldColorIndex, boolean secondary){
+        int index = hexagon.getIndex();
+        history.record(index, oldColorIndex, hexagon.getColorIndex());
+        recordPropagation = true;
+        SessionRecorder.recordClick(index, secondary);
+    }
+
+    /**
+     * Undoes the last color change made by the user. The clicked hexagon and every
+     * hexagon its propagation changed are set back, so the board is exactly as it
+     * was before the click. Nothing is undone while a change is still propagating,
+     * as the hexagons it changes are still being recorded.
+     * @return true if a change was undone, false if there was nothing to undo.
+     */
+    protected boolean undo(){
+        if(updating.get()){ return false; }
+        return applyEdit(history.undo());
+    }
+
+    /**
+     * Redoes the last undone color change.
+     * @return true if a change was redone, false if there was nothing to redo.
+     */
+    protected boolean redo(){
+        if(updating.get()){ return false; }
+        return applyEdit(history.redo());
+    }
+
+    /**
+     * Sets the hexagons of an undone or redone edit to their colors. The board
+     * needs no propagation, the edit holds every hexagon that changed.
+     * @param edit the index, color pairs of the hexagons, or null to do nothing.
+     * @return true if the board changed.
+     */
+    private boolean applyEdit(int[] edit){
+        if(edit == null){ return false; }
+        for(int i = 0; i < edit.length; i += 2){
+            hexagons.get(edit[i]).setColor(edit[i + 1]);
+            boardController.setColorIndex(edit[i], edit[i + 1]);
+        }
+        return true;
+    }
+
+    /**
+     * @return true while the board is being set up or a change is propagating.
+     */
+    protected static boolean isUpdating(){
+        return updating.get();
     }
 
     /**
@@ -275,41 +680,73 @@ public class BoardView implements ListChangeListener {
      */
     protected synchronized static void updateBoard(){
         if(!updating.get()){ return; } // if updating flag is not set, then return
+        if(building){ // rows still being added are colored from their parents, the rest once they are all added
+            propagateAfterBuild = true;
+            return;
+        }
 
         // Animation Thread allows for animation flow control separate from user input (main thread)
-        animationThread = new Thread(()->{
-            // Finding first hexagon that changed color
-            int firstPosChanged = 0;
-
-            for(int i = 0; i < boardController.getIndexSize(); i++){
-                Hexagon hexagon = hexagons.get(i);
-                int hexagonColor = hexagon.getColorIndex();
-                int indexColor = boardController.getColorFromIndex(i);
-                if(hexagonColor != indexColor){
-                    boardController.setColorIndex(i, hexagonColor);
-                    firstPosChanged = i;
-                    break;
-                }
-            }
+        animationThread = new Thread(()-> propagateChanges(true));
+        animationThread.start();
+    }
 
-            int startingRow = hexagons.get(firstPosChanged).getRow(); // Getting starting row to update (no need to update rows not changing)
-            if(startingRow != 0){ // if not top row, incrementing to children of the row that changed
-                startingRow++;
+    /**
+     * Finds the first hexagon that changed color and updates every row below it,
+     * then clears the updating flag.
+     * @param animated true to pause between rows for the animation, false to
+     *                 update all rows at once.
+     */
+    protected static void propagateChanges(boolean animated){
+        BoardEvents.UpdateBoardEvent event = new BoardEvents.UpdateBoardEvent();
+        event.begin();
+        long computeStartNanos = System.nanoTime();
+        boolean record = recordPropagation;
+        recordPropagation = false;
+        // Finding first hexagon that changed color
+        int firstPosChanged = 0;
+
+        for(int i = 0; i < boardController.getIndexSize(); i++){
+            Hexagon hexagon = hexagons.get(i);
+            int hexagonColor = hexagon.getColorIndex();
+            int indexColor = boardController.getColorFromIndex(i);
+            if(hexagonColor != indexColor){
+                boardController.setColorIndex(i, hexagonColor);
+                firstPosChanged = i;
+                break;
             }
-            // Updating each row
-            for(int row = startingRow; row < rows; row++){
-                setRowColors(row);
-                // "Slowing" for animation purposes
-                try {
-                    Thread.sleep(animationSleepMillis);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
+        }
+
+        int startingRow = hexagons.get(firstPosChanged).getRow(); // Getting starting row to update (no need to update rows not changing)
+        if(startingRow != 0){ // if not top row, incrementing to children of the row that changed
+            startingRow++;
+        }
+        // Updating each row
+        int cellsRecomputed = 0;
+        int cellsChanged = 0;
+        long computeNanos = 0;
+        for(int row = startingRow; row < rows; row++){
+            cellsChanged += setRowColors(row, record);
+            cellsRecomputed += startingRowLength - row;
+            if(!animated){ continue; }
+            // "Slowing" for animation purposes, the pause is not counted as compute time
+            computeNanos += System.nanoTime() - computeStartNanos;
+            try {
+                Thread.sleep(animationSleepMillis);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
             }
-            // Clearing updating flag
-            updating.compareAndSet(true, false);
-        });
-        animationThread.start();
+            computeStartNanos = System.nanoTime();
+        }
+        computeNanos += System.nanoTime() - computeStartNanos;
+        // Clearing updating flag
+        updating.compareAndSet(true, false);
+
+        BoardMetrics.recordPropagation(computeNanos, cellsRecomputed, cellsChanged);
+        event.firstRow = startingRow;
+        event.cellsRecomputed = cellsRecomputed;
+        event.cellsChanged = cellsChanged;
+        event.computeNanos = computeNanos;
+        event.commit();
     }
 
     @Override
@@ -328,24 +765,26 @@ public class BoardView implements ListChangeListener {
     }
 
     protected void changeBoardSize(int newSize){
+        changeBoardSize(newSize, seedSource.nextLong());
+    }
+
+    /**
+     * Changes the board size and sets up a new random board.
+     * @param newSize the number of hexagons in the starting row.
+     * @param seed the seed of the random starting row.
+     */
+    protected void changeBoardSize(int newSize, long seed){
         boardController.setStartingRowLength(newSize);
         startingRowLength = newSize;
-        setScaleFromSize(newSize);
-        setupBoard();
+        prefetcher.invalidate();
+        setupBoard(seed);
     }
 
     /**
-     * Maps the size to scale on an equation that approximates the largest scale
-     * for sizes that will fit in the default window size.
-     * The equation used is 12 / [ (x + 0.5) log(e) ]
-     * This was determined by experimentally getting (size, scale) points, then
-     * using desmos to map an equation onto the points.
-     * @param size the number of hexagons in the starting row
+     * @return the seed of the current random board.
      */
-    private void setScaleFromSize(int size){
-        double logpart = Math.log10(Math.E);
-        double denomenator = (size + 0.5) * logpart;
-        currentScale = 12 / denomenator;
+    protected long getSeed(){
+        return seed;
     }
 
     /**
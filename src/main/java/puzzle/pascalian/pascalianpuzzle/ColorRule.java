@@ -0,0 +1,379 @@
+package puzzle.pascalian.pascalianpuzzle;
+
+import javafx.scene.paint.Color;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A rule giving the color of a child hexagon from the colors of its two parents.
+ * Every rule is compiled into a flat lookup table with one entry per pair of
+ * parent colors. Rules with 2 or 3 colors also get a bit-sliced kernel that
+ * computes 64 hexagons of a row at once, used when many rows are computed
+ * without nodes.
+ *
+ * The rule used by the board, and by headless computation unless told
+ * otherwise, is the active rule.
+ */
+public final class ColorRule {
+
+    private final static int MAX_BIT_SLICED_COLORS = 3;
+    private final static int MIN_BIT_SLICED_LENGTH = 64;
+    private final static Color[] PALETTE = new Color[] {
+            Color.BLUE, Color.RED, Color.YELLOW, Color.GREEN, Color.ORANGE,
+            Color.PURPLE, Color.CYAN, Color.MAGENTA, Color.BROWN, Color.PINK
+    };
+
+    /**
+     * The original rule: equal parents give the same color, different parents give
+     * the color neither parent is. Over 0, 1, 2 this is -(left + right) mod 3.
+     */
+    public final static ColorRule PASCALIAN = additive("Pascalian", 3, 2, 2, 0);
+
+    private final static ArrayList<ColorRule> rules = new ArrayList<>(List.of(
+            PASCALIAN,
+            additive("Pascal mod 2", 2, 1, 1, 0),
+            additive("Pascal mod 3", 3, 1, 1, 0),
+            additive("Pascal mod 5", 5, 1, 1, 0),
+            fromTable("Rock Paper Scissors", new int[][] {
+                    {0, 1, 0},
+                    {1, 1, 2},
+                    {0, 2, 2}
+            })
+    ));
+    private static volatile ColorRule activeRule = PASCALIAN;
+
+    private final String name;
+    private final int colorCount;
+    private final int[] table;
+    private final boolean transparentKeepsColor;
+    // Linear rules (left * leftWeight + right * rightWeight mod a prime) have closed forms
+    private final int leftWeight;
+    private final int rightWeight;
+    private final boolean linear;
+    // For each child color, the parent pairs giving it, packed as left * colorCount + right
+    private final int[][] bitSlicedTerms;
+
+    private ColorRule(String name, int colorCount, int[] table, boolean transparentKeepsColor,
+                      int leftWeight, int rightWeight, boolean linear){
+        this.name = name;
+        this.colorCount = colorCount;
+        this.table = table;
+        this.transparentKeepsColor = transparentKeepsColor;
+        this.leftWeight = leftWeight;
+        this.rightWeight = rightWeight;
+        this.linear = linear;
+        this.bitSlicedTerms = colorCount <= MAX_BIT_SLICED_COLORS ? compileBitSlicedTerms() : null;
+    }
+
+    /**
+     * Creates a rule where the child is (left * leftWeight + right * rightWeight + constant) mod colorCount.
+     * @param name the name shown for the rule.
+     * @param colorCount the number of colors, k.
+     * @param leftWeight the weight of the left parent.
+     * @param rightWeight the weight of the right parent.
+     * @param constant the constant added to every child.
+     * @return the compiled rule.
+     */
+    public static ColorRule additive(String name, int colorCount, int leftWeight, int rightWeight, int constant){
+        checkColorCount(colorCount);
+        int[] table = new int[colorCount * colorCount];
+        for(int left = 0; left < colorCount; left++){
+            for(int right = 0; right < colorCount; right++){
+                table[left * colorCount + right] = Math.floorMod(left * leftWeight + right * rightWeight + constant, colorCount);
+            }
+        }
+        boolean linear = constant % colorCount == 0 && isPrime(colorCount);
+        return new ColorRule(name, colorCount, table, true,
+                Math.floorMod(leftWeight, colorCount), Math.floorMod(rightWeight, colorCount), linear);
+    }
+
+    /**
+     * Creates a rule from a k x k lookup table.
+     * @param name the name shown for the rule.
+     * @param table the child color for each (left parent, right parent) pair.
+     * @return the compiled rule.
+     * @throws IllegalArgumentException if the table is not square or has an entry outside 0 to k - 1.
+     */
+    public static ColorRule fromTable(String name, int[][] table){
+        int colorCount = table.length;
+        checkColorCount(colorCount);
+        int[] flatTable = new int[colorCount * colorCount];
+        for(int left = 0; left < colorCount; left++){
+            if(table[left].length != colorCount){
+                throw new IllegalArgumentException("Rule table must be " + colorCount + " x " + colorCount);
+            }
+            for(int right = 0; right < colorCount; right++){
+                int child = table[left][right];
+                if(child < 0 || child >= colorCount){
+                    throw new IllegalArgumentException("Unexpected color in rule table: " + child);
+                }
+                flatTable[left * colorCount + right] = child;
+            }
+        }
+        return new ColorRule(name, colorCount, flatTable, true, 0, 0, false);
+    }
+
+    /**
+     * @return a copy of this rule where a child with a transparent parent becomes
+     *         transparent, instead of keeping its current color.
+     */
+    public ColorRule withTransparentChildren(){
+        return new ColorRule(name + " (transparent)", colorCount, table, false, leftWeight, rightWeight, linear);
+    }
+
+    private static void checkColorCount(int colorCount){
+        if(colorCount < 2 || colorCount > PALETTE.length){
+            throw new IllegalArgumentException("Rules must have between 2 and " + PALETTE.length + " colors");
+        }
+    }
+
+    private static boolean isPrime(int n){
+        for(int d = 2; d * d <= n; d++){
+            if(n % d == 0){ return false; }
+        }
+        return n >= 2;
+    }
+
+    public static ColorRule getActiveRule(){
+        return activeRule;
+    }
+
+    public static void setActiveRule(ColorRule rule){
+        activeRule = rule;
+    }
+
+    /**
+     * @return every rule that can be picked, the Pascalian rule first.
+     */
+    public static synchronized List<ColorRule> getRules(){
+        return List.copyOf(rules);
+    }
+
+    /**
+     * Adds a rule to the ones that can be picked.
+     * @param rule the rule to add.
+     */
+    public static synchronized void addRule(ColorRule rule){
+        rules.add(rule);
+    }
+
+    /**
+     * @param name the name of the rule.
+     * @return the rule with the given name, or null if there is none.
+     */
+    public static ColorRule forName(String name){
+        for(ColorRule rule : getRules()){
+            if(rule.getName().equals(name)){
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Calculates the color of a child hexagon given the colors of the parents.
+     * @param leftColorIndex the color index of the left parent
+     * @param rightColorIndex the color index of the right parent
+     * @param currentColorIndex the current color index of the child, kept if
+     *                          a parent is transparent and the rule says so.
+     * @return the color index of the child
+     */
+    public int getNextColorIndex(int leftColorIndex, int rightColorIndex, int currentColorIndex){
+        if(leftColorIndex == BoardController.NOT_A_COLOR || rightColorIndex == BoardController.NOT_A_COLOR){
+            return transparentKeepsColor ? currentColorIndex : BoardController.NOT_A_COLOR;
+        }
+        return table[leftColorIndex * colorCount + rightColorIndex];
+    }
+
+    /**
+     * Computes the following rows of a row in place. After the call, the first
+     * length - steps entries hold the row that many rows down.
+     * @param row the row, changed in place.
+     * @param length the number of hexagons in the row.
+     * @param steps the number of rows to move down.
+     */
+    protected void advanceRow(int[] row, int length, int steps){
+        if(bitSlicedTerms != null && length >= MIN_BIT_SLICED_LENGTH && !hasTransparent(row, length)){
+            advanceRowBitSliced(row, length, steps);
+            return;
+        }
+        for(int step = 1; step <= steps; step++){
+            for(int i = 0; i < length - step; i++){
+                row[i] = getNextColorIndex(row[i], row[i + 1], BoardController.NOT_A_COLOR);
+            }
+        }
+    }
+
+    /**
+     * Bit-sliced version of advanceRow. Each color has a plane with one bit per
+     * hexagon, so a child plane is an OR over the parent pairs giving that color
+     * of (left plane AND right plane shifted by one hexagon).
+     */
+    private void advanceRowBitSliced(int[] row, int length, int steps){
+        int words = (length + 63) >>> 6;
+        long[][] planes = new long[colorCount][words];
+        long[][] nextPlanes = new long[colorCount][words];
+        for(int i = 0; i < length; i++){
+            planes[row[i]][i >>> 6] |= 1L << (i & 63);
+        }
+        long[] left = new long[colorCount];
+        long[] right = new long[colorCount];
+        for(int step = 1; step <= steps; step++){
+            int stepWords = (length - step + 63) >>> 6;
+            for(int w = 0; w < stepWords; w++){
+                for(int color = 0; color < colorCount; color++){
+                    left[color] = planes[color][w];
+                    long carry = w + 1 < words ? planes[color][w + 1] << 63 : 0;
+                    right[color] = (planes[color][w] >>> 1) | carry;
+                }
+                for(int child = 0; child < colorCount; child++){
+                    long plane = 0;
+                    for(int term : bitSlicedTerms[child]){
+                        plane |= left[term / colorCount] & right[term % colorCount];
+                    }
+                    nextPlanes[child][w] = plane;
+                }
+            }
+            long[][] swap = planes;
+            planes = nextPlanes;
+            nextPlanes = swap;
+        }
+        for(int i = 0; i < length - steps; i++){
+            for(int color = 0; color < colorCount; color++){
+                if((planes[color][i >>> 6] & (1L << (i & 63))) != 0){
+                    row[i] = color;
+                    break;
+                }
+            }
+        }
+    }
+
+    private int[][] compileBitSlicedTerms(){
+        int[][] terms = new int[colorCount][];
+        for(int child = 0; child < colorCount; child++){
+            int count = 0;
+            for(int entry : table){
+                if(entry == child){ count++; }
+            }
+            terms[child] = new int[count];
+            int t = 0;
+            for(int pair = 0; pair < table.length; pair++){
+                if(table[pair] == child){
+                    terms[child][t++] = pair;
+                }
+            }
+        }
+        return terms;
+    }
+
+    private static boolean hasTransparent(int[] row, int length){
+        for(int i = 0; i < length; i++){
+            if(row[i] == BoardController.NOT_A_COLOR){ return true; }
+        }
+        return false;
+    }
+
+    /**
+     * Calculates the coefficient of each starting row hexagon in the color of a
+     * cell the given number of rows below it, for linear rules:
+     * C(rows, i) * leftWeight^(rows - i) * rightWeight^i mod k.
+     * @param rows the number of rows below the starting row.
+     * @return the coefficients, one per hexagon from the leftmost parent.
+     * @throws IllegalStateException if the rule is not linear.
+     */
+    protected int[] getCoefficients(int rows){
+        if(!linear){
+            throw new IllegalStateException(name + " is not a linear rule");
+        }
+        int[] coefficients = new int[rows + 1];
+        int[] leftPowers = powers(leftWeight, rows);
+        int[] rightPowers = powers(rightWeight, rows);
+        for(int i = 0; i <= rows; i++){
+            coefficients[i] = binomialModPrime(rows, i, colorCount) * leftPowers[rows - i] % colorCount
+                    * rightPowers[i] % colorCount;
+        }
+        return coefficients;
+    }
+
+    private int[] powers(int base, int maxExponent){
+        int[] powers = new int[maxExponent + 1];
+        powers[0] = 1 % colorCount;
+        for(int e = 1; e <= maxExponent; e++){
+            powers[e] = powers[e - 1] * base % colorCount;
+        }
+        return powers;
+    }
+
+    /**
+     * Calculates the binomial coefficient C(n, k) mod a prime using Lucas' theorem.
+     * @param n the number of items.
+     * @param k the number of items chosen.
+     * @param prime the prime modulus.
+     * @return C(n, k) mod prime.
+     */
+    protected static int binomialModPrime(long n, long k, int prime){
+        if(k < 0 || k > n){ return 0; }
+        long result = 1;
+        while(n > 0 && result != 0){
+            int nDigit = (int) (n % prime);
+            int kDigit = (int) (k % prime);
+            if(kDigit > nDigit){
+                return 0;
+            }
+            // C(nDigit, kDigit) for digits below the prime, computed exactly
+            long digitBinomial = 1;
+            for(int i = 0; i < kDigit; i++){
+                digitBinomial = digitBinomial * (nDigit - i) / (i + 1);
+            }
+            result = result * (digitBinomial % prime) % prime;
+            n /= prime;
+            k /= prime;
+        }
+        return (int) result;
+    }
+
+    /**
+     * @param colorIndex the color index, or -1 for transparent.
+     * @return the fill color of the color index.
+     */
+    public Color getColor(int colorIndex){
+        if(colorIndex == BoardController.NOT_A_COLOR){
+            return Color.TRANSPARENT;
+        }
+        if(colorIndex < 0 || colorIndex >= colorCount){
+            System.out.println("Unexpected value: " + colorIndex);
+            return Color.BLACK;
+        }
+        return PALETTE[colorIndex];
+    }
+
+    public String getName(){
+        return name;
+    }
+
+    public int getColorCount(){
+        return colorCount;
+    }
+
+    /**
+     * @return true if the rule is additive without a constant over a prime number of
+     *         colors, so any cell is a weighted sum of the starting row.
+     */
+    public boolean isLinear(){
+        return linear;
+    }
+
+    protected int getLeftWeight(){
+        return leftWeight;
+    }
+
+    protected int getRightWeight(){
+        return rightWeight;
+    }
+
+    @Override
+    public String toString(){
+        return name;
+    }
+}
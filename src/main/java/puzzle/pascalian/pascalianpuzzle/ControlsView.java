@@ -1,18 +1,34 @@
 package puzzle.pascalian.pascalianpuzzle;
 
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
+import javafx.scene.Node;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.Slider;
+import javafx.scene.control.TextField;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Rectangle;
+import javafx.util.Duration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 
 public class ControlsView {
 
     private BoardView boardView;
     private VBox controlsBar;
+    private Slider animationSpeedSlider;
+    private Slider boardSizeSlider;
+    private TextField seedField;
     private final int SLIDER_WIDTH;
 
     /**
@@ -46,6 +62,14 @@ public class ControlsView {
         HBox boardSizeBox = setupSizeSlider();
         controlsBar.getChildren().add(boardSizeBox);
 
+        // Adding rule picker
+        HBox ruleBox = setupRulePicker();
+        controlsBar.getChildren().add(ruleBox);
+
+        // Adding performance metrics overlay
+        HBox metricsBox = setupMetricsOverlay();
+        controlsBar.getChildren().add(metricsBox);
+
     }
 
     /**
@@ -67,6 +91,26 @@ public class ControlsView {
         pattern.setOnAction(e-> patternButtonOnAction());
         buttonBar.getChildren().add(pattern);
 
+        Button undo = setupButton("Undo");
+        undo.setOnAction(e-> {
+            if(boardView.undo()){
+                SessionRecorder.recordUndo();
+            }
+        });
+        buttonBar.getChildren().add(undo);
+
+        Button redo = setupButton("Redo");
+        redo.setOnAction(e-> {
+            if(boardView.redo()){
+                SessionRecorder.recordRedo();
+            }
+        });
+        buttonBar.getChildren().add(redo);
+
+        Button gallery = setupButton("Gallery");
+        gallery.setOnAction(e-> galleryButtonOnAction());
+        buttonBar.getChildren().add(gallery);
+
         Button exit = setupButton("Exit");
         exit.setOnAction(e-> System.exit(0));
         buttonBar.getChildren().add(exit);
@@ -80,6 +124,7 @@ public class ControlsView {
      */
     private void setupButtonOnAction(){
         boardView.clearBoard();
+        SessionRecorder.recordClear();
     }
 
     /**
@@ -87,6 +132,8 @@ public class ControlsView {
      */
     private void resetButtonOnAction(){
         boardView.setupBoard();
+        SessionRecorder.recordReset(boardView.getSeed());
+        showSeed();
     }
 
     /**
@@ -94,6 +141,44 @@ public class ControlsView {
      */
     private void patternButtonOnAction(){
         boardView.setupSpecialBoard();
+        SessionRecorder.recordPattern();
+        seedField.clear(); // the Pattern board has no seed
+    }
+
+    /**
+     * Opens a gallery of boards, clicking one loads it onto the board.
+     */
+    private void galleryButtonOnAction(){
+        int size = boardView.getStartingRowLength();
+        new GalleryView(ColorRule.getActiveRule(), size, boardView.getSeed(), boardView.getMaxStartingRowLength(),
+                this::loadBoard, seed -> loadBoard(size, seed)).show();
+    }
+
+    /**
+     * Sets the board to a given starting row, changing the board size first if needed.
+     * @param startingRow the color indices of the starting row.
+     */
+    private void loadBoard(int[] startingRow){
+        if(startingRow.length != boardView.getStartingRowLength()){
+            boardSizeSlider.setValue(startingRow.length);
+        }
+        boardView.setupBoard(startingRow);
+        SessionRecorder.recordStartingRow(startingRow);
+        seedField.clear(); // a loaded board has no seed
+    }
+
+    /**
+     * Sets the board to the random board of a seed, changing the board size first if needed.
+     * @param size the number of hexagons in the starting row.
+     * @param seed the seed of the random starting row.
+     */
+    private void loadBoard(int size, long seed){
+        if(size != boardView.getStartingRowLength()){
+            boardSizeSlider.setValue(size);
+        }
+        boardView.setupBoard(seed);
+        SessionRecorder.recordReset(seed);
+        showSeed();
     }
 
     /**
@@ -104,9 +189,12 @@ public class ControlsView {
     private HBox setupAnimationSpeedSlider(){
         HBox sliderBox = new HBox();
         Label animationSpeedLabel = new Label("Animation Speed");
-        Slider animationSpeedSlider = new Slider(0, 1, 0.1);
+        animationSpeedSlider = new Slider(0, 1, 0.1);
         animationSpeedSlider.valueProperty().addListener(
-                (observableValue, oldValue, newValue) -> boardView.updateAnimationSpeed((double) newValue)
+                (observableValue, oldValue, newValue) -> {
+                    boardView.updateAnimationSpeed((double) newValue);
+                    SessionRecorder.recordSpeed((double) newValue);
+                }
         );
         animationSpeedSlider.setMinWidth(SLIDER_WIDTH);
         sliderBox.getChildren().addAll(animationSpeedLabel, animationSpeedSlider);
@@ -127,7 +215,7 @@ public class ControlsView {
         Label boardSizeLabel = new Label(labelText);
 
         // Setting up slider
-        Slider boardSizeSlider = new Slider(boardView.getMinStartingRowLength(), boardView.getMaxStartingRowLength(), boardView.getStartingRowLength());
+        boardSizeSlider = new Slider(boardView.getMinStartingRowLength(), boardView.getMaxStartingRowLength(), boardView.getStartingRowLength());
         addBoardSizeSliderListener(boardSizeSlider, boardSizeLabel);
 
         // Setting up custom tick marks
@@ -165,6 +253,8 @@ public class ControlsView {
                     }
                     boardSizeLabel.setText(newLabelText);
                     boardView.changeBoardSize(newLabelValue);
+                    SessionRecorder.recordSize(newLabelValue, boardView.getSeed());
+                    showSeed();
                 }
         );
     }
@@ -230,6 +320,141 @@ public class ControlsView {
         return tickPane;
     }
 
+    /**
+     * Sets up the rule picker. Picking a rule makes it the active ColorRule and
+     * sets up a new board, since the old colors may not exist in the new rule.
+     * @return the HBox containing the rule picker and the seed field.
+     */
+    private HBox setupRulePicker(){
+        HBox ruleBox = new HBox();
+        Label ruleLabel = new Label("Rule");
+        ChoiceBox<ColorRule> rulePicker = new ChoiceBox<>();
+        rulePicker.getItems().addAll(ColorRule.getRules());
+        rulePicker.setValue(ColorRule.getActiveRule());
+        rulePicker.valueProperty().addListener(
+                (observableValue, oldValue, newValue) -> {
+                    ColorRule.setActiveRule(newValue);
+                    boardView.setupBoard();
+                    SessionRecorder.recordRule(newValue.getName(), boardView.getSeed());
+                    showSeed();
+                }
+        );
+        ruleBox.getChildren().addAll(ruleLabel, rulePicker);
+        ruleBox.getChildren().addAll(setupSeedField());
+        setHBoxSettings(ruleBox);
+        ruleBox.setPadding(new Insets(0,20,0,20));
+        return ruleBox;
+    }
+
+    /**
+     * Sets up the optional performance metrics overlay. When checked, the label shows
+     * the current propagation latency and FX pulse layout percentiles from BoardMetrics.
+     * The session recording and puzzle check boxes share its row.
+     * @return the HBox containing the recording, puzzle and metrics check boxes and the metrics label.
+     */
+    private HBox setupMetricsOverlay(){
+        HBox metricsBox = new HBox();
+        CheckBox showMetrics = new CheckBox("Metrics");
+        Label metricsLabel = new Label();
+        metricsLabel.setStyle("-fx-font-size: 12; -fx-font-weight: normal;");
+        metricsLabel.setVisible(false);
+
+        // Refreshing the label twice a second while it is shown
+        Timeline refresh = new Timeline(new KeyFrame(Duration.millis(500),
+                e-> metricsLabel.setText(BoardMetrics.getSummary())));
+        refresh.setCycleCount(Animation.INDEFINITE);
+        showMetrics.selectedProperty().addListener(
+                (observableValue, oldValue, newValue) -> {
+                    metricsLabel.setVisible(newValue);
+                    if(newValue){
+                        metricsLabel.setText(BoardMetrics.getSummary());
+                        refresh.play();
+                    }else{
+                        refresh.stop();
+                    }
+                }
+        );
+
+        CheckBox record = setupRecordCheckBox();
+
+        // Puzzles are played by clicking the starting row only
+        CheckBox puzzle = new CheckBox("Puzzle");
+        puzzle.selectedProperty().addListener(
+                (observableValue, oldValue, newValue) -> BoardView.setStartingRowOnly(newValue)
+        );
+
+        metricsBox.getChildren().addAll(record, puzzle, showMetrics, metricsLabel);
+        setHBoxSettings(metricsBox);
+        metricsBox.setPadding(new Insets(0,20,0,20));
+        return metricsBox;
+    }
+
+    /**
+     * Sets up the session recording check box. When checked, a new board is set up
+     * and everything done to the board is recorded to session-[date-time].log in the
+     * working directory, for replaying with SessionReplay.
+     * @return the recording check box.
+     */
+    private CheckBox setupRecordCheckBox(){
+        CheckBox record = new CheckBox("Record");
+        record.selectedProperty().addListener(
+                (observableValue, oldValue, newValue) -> {
+                    if(!newValue){
+                        SessionRecorder.stop();
+                        return;
+                    }
+                    String time = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+                    try {
+                        SessionRecorder.start(Path.of("session-" + time + ".log"), boardView.getStartingRowLength(),
+                                ColorRule.getActiveRule().getName(), animationSpeedSlider.getValue());
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                        record.setSelected(false);
+                        return;
+                    }
+                    // The log starts from a board it can rebuild from a seed
+                    boardView.setupBoard();
+                    SessionRecorder.recordReset(boardView.getSeed());
+                    showSeed();
+                }
+        );
+        return record;
+    }
+
+    /**
+     * Sets up the seed field. It shows the seed of the current random board, which
+     * can be copied and shared; typing a seed and pressing enter sets up its board.
+     * @return the seed label and field.
+     */
+    private Node[] setupSeedField(){
+        Label seedLabel = new Label("Seed");
+        seedField = new TextField();
+        seedField.setPrefColumnCount(12);
+        seedField.setPromptText("pattern");
+        seedField.setStyle("-fx-font-family: monospace; -fx-font-size: 14; -fx-font-weight: normal;");
+        seedField.setOnAction(e-> {
+            long seed;
+            try {
+                seed = StartingRowGenerator.parseSeed(seedField.getText());
+            } catch (NumberFormatException ex) {
+                showSeed(); // not a seed, showing the current one again
+                return;
+            }
+            boardView.setupBoard(seed);
+            SessionRecorder.recordReset(seed);
+            showSeed();
+        });
+        showSeed();
+        return new Node[] {seedLabel, seedField};
+    }
+
+    /**
+     * Shows the seed of the current random board in the seed field.
+     */
+    private void showSeed(){
+        seedField.setText(StartingRowGenerator.formatSeed(boardView.getSeed()));
+    }
+
     /**
      *Sets the default spacing for an HBox in the top bar.
      * @param topBarHBox the HBox to set to default settings.
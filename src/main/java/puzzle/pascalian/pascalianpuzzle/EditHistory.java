@@ -0,0 +1,151 @@
+package puzzle.pascalian.pascalianpuzzle;
+
+import java.util.Arrays;
+
+/**
+ * Undo and redo history of the hexagons changed by the user. Only the changed
+ * hexagons are recorded, never the board: each edit holds the clicked hexagon
+ * and every hexagon below it that its propagation changed, each packed into a
+ * single int holding the hexagon index and its old and new colors. Undo and redo
+ * set all of them back, without propagating, so hexagons clicked below a later
+ * click get their clicked colors back. The edits are stored in a ring buffer;
+ * when it is full the oldest edit is forgotten.
+ */
+public class EditHistory {
+
+    private final static int COLOR_BITS = 4;
+    private final static int COLOR_MASK = (1 << COLOR_BITS) - 1;
+    private final static int INDEX_SHIFT = 2 * COLOR_BITS;
+    private final static int INITIAL_EDIT_CELLS = 8;
+
+    private final int[][] edits;     // the packed hexagons of each edit, the clicked one first
+    private final int[] editLengths; // the number of hexagons of each edit
+    private int oldest;     // position of the oldest edit in the ring
+    private int undoCount;  // edits that can be undone
+    private int redoCount;  // undone edits after them that can be redone
+
+    /**
+     * Constructor.
+     * @param depth the number of edits that can be undone.
+     */
+    public EditHistory(int depth){
+        if(depth < 1){
+            throw new IllegalArgumentException("History depth must be at least 1");
+        }
+        edits = new int[depth][];
+        editLengths = new int[depth];
+    }
+
+    /**
+     * Records an edit, forgetting any undone edits.
+     * @param index the index of the hexagon, in the same order as the BoardController.
+     * @param oldColorIndex the color before the edit, or -1 for transparent.
+     * @param newColorIndex the color after the edit, or -1 for transparent.
+     */
+    protected synchronized void record(int index, int oldColorIndex, int newColorIndex){
+        int slot;
+        redoCount = 0;
+        if(undoCount == edits.length){ // Full, overwriting the oldest edit
+            slot = oldest;
+            oldest = (oldest + 1) % edits.length;
+        }else{
+            slot = (oldest + undoCount) % edits.length;
+            undoCount++;
+        }
+        if(edits[slot] == null){
+            edits[slot] = new int[INITIAL_EDIT_CELLS];
+        }
+        edits[slot][0] = pack(index, oldColorIndex, newColorIndex);
+        editLengths[slot] = 1;
+    }
+
+    /**
+     * Adds a hexagon changed by the propagation of the last recorded edit to that edit.
+     * Does nothing if the last edit has been undone.
+     * @param index the index of the hexagon, in the same order as the BoardController.
+     * @param oldColorIndex the color before the propagation, or -1 for transparent.
+     * @param newColorIndex the color after the propagation, or -1 for transparent.
+     */
+    protected synchronized void recordPropagated(int index, int oldColorIndex, int newColorIndex){
+        if(undoCount == 0 || redoCount > 0){ return; }
+        int slot = (oldest + undoCount - 1) % edits.length;
+        if(editLengths[slot] == edits[slot].length){
+            edits[slot] = Arrays.copyOf(edits[slot], edits[slot].length * 2);
+        }
+        edits[slot][editLengths[slot]++] = pack(index, oldColorIndex, newColorIndex);
+    }
+
+    /**
+     * Steps back one edit.
+     * @return the hexagons of the undone edit as index, color to restore pairs,
+     *         e.g. {index, color, index, color}, or null if there is nothing to undo.
+     */
+    protected synchronized int[] undo(){
+        if(undoCount == 0){ return null; }
+        undoCount--;
+        redoCount++;
+        return getColors((oldest + undoCount) % edits.length, true);
+    }
+
+    /**
+     * Steps forward one undone edit.
+     * @return the hexagons of the redone edit as index, color to restore pairs,
+     *         or null if there is nothing to redo.
+     */
+    protected synchronized int[] redo(){
+        if(redoCount == 0){ return null; }
+        int slot = (oldest + undoCount) % edits.length;
+        undoCount++;
+        redoCount--;
+        return getColors(slot, false);
+    }
+
+    /**
+     * @param slot the position of the edit in the ring.
+     * @param old true for the colors before the edit, false for the colors after it.
+     * @return the hexagons of the edit as index, color pairs.
+     */
+    private int[] getColors(int slot, boolean old){
+        int[] colors = new int[2 * editLengths[slot]];
+        for(int i = 0; i < editLengths[slot]; i++){
+            int edit = edits[slot][i];
+            colors[2 * i] = edit >>> INDEX_SHIFT;
+            colors[2 * i + 1] = unpack(old ? edit >>> COLOR_BITS : edit);
+        }
+        return colors;
+    }
+
+    /**
+     * Forgets every edit, for when the board is replaced.
+     */
+    protected synchronized void clear(){
+        oldest = 0;
+        undoCount = 0;
+        redoCount = 0;
+    }
+
+    protected synchronized boolean canUndo(){
+        return undoCount > 0;
+    }
+
+    protected synchronized boolean canRedo(){
+        return redoCount > 0;
+    }
+
+    protected int getDepth(){
+        return edits.length;
+    }
+
+    private static int pack(int index, int oldColorIndex, int newColorIndex){
+        return (index << INDEX_SHIFT) | (pack(oldColorIndex) << COLOR_BITS) | pack(newColorIndex);
+    }
+
+    // Colors are stored one higher so transparent (-1) fits in the unsigned bits
+    private static int pack(int colorIndex){
+        return (colorIndex + 1) & COLOR_MASK;
+    }
+
+    private static int unpack(int bits){
+        return (bits & COLOR_MASK) - 1;
+    }
+}
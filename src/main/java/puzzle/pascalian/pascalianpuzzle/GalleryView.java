@@ -0,0 +1,385 @@
+package puzzle.pascalian.pascalianpuzzle;
+
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.control.ChoiceBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.stage.Stage;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.IntToLongFunction;
+import java.util.function.LongConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * A window of many small boards side by side, for studying the patterns they make:
+ * every starting row of a small size, each Pascalinacci size with every pair of
+ * corner colors, or a thousand random boards of the current size.
+ *
+ * Only thumbnails are shown. The boards of the visible lines are computed and
+ * drawn into pixel buffers by a pool of workers, one per processor, and turned
+ * into images on the FX thread. The list is virtualized, so only the visible
+ * lines have nodes, and a fixed number of recent thumbnails is cached, so memory
+ * stays the same however far the list is scrolled. Boards scrolled out of view
+ * before a worker reaches them are skipped. Clicking a thumbnail loads its board
+ * into the main window, the only place a full interactive board is created. Random
+ * boards are loaded from their seed, so the seed is shown and recorded as usual.
+ */
+public class GalleryView {
+
+    private final static int THUMBNAILS_PER_LINE = 6;
+    private final static int THUMBNAIL_WIDTH = 120;
+    private final static int THUMBNAIL_HEIGHT = 104;
+    private final static int LINE_HEIGHT = THUMBNAIL_HEIGHT + 30;
+    private final static int MAX_CACHED_THUMBNAILS = 256;
+    private final static int MAX_ENUMERATED_BOARDS = 2187; // every row of size 7 with 3 colors
+    private final static int RANDOM_BOARDS = 1000;
+    private final static String TEXT_STYLE = "-fx-font-size: 12; -fx-font-weight: normal;";
+
+    private final ColorRule rule;
+    private final int[] palette;
+    private final Consumer<int[]> onPick;
+    private final LongConsumer onPickSeed;
+    private final Stage stage;
+    private final ListView<Integer> lines;
+    private final ExecutorService workers;
+
+    // FX thread state
+    private Source source;
+    private int generation;
+    private final Map<Integer, WritableImage> thumbnails =
+            new LinkedHashMap<>(MAX_CACHED_THUMBNAILS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, WritableImage> eldest){
+                    return size() > MAX_CACHED_THUMBNAILS;
+                }
+            };
+    private final HashSet<Integer> pendingBoards = new HashSet<>();
+    // The lines shown by the cells of the list, read by the workers
+    private volatile Set<Integer> shownLines = Set.of();
+
+    /**
+     * The boards of a gallery.
+     * @param seed the seed of each board, or null if the boards are not random boards.
+     */
+    private record Source(String name, int count, IntFunction<int[]> startingRow, IntFunction<String> label,
+                          IntToLongFunction seed) {
+
+        @Override
+        public String toString(){
+            return name + " (" + count + ")";
+        }
+    }
+
+    /**
+     * Constructor.
+     * @param rule the rule to compute the boards with.
+     * @param size the size of the board in the main window, for the random boards.
+     * @param seed the seed of the board in the main window, for the random boards and corners.
+     * @param maxSize the largest board the main window can show.
+     * @param onPick called with the starting row of a board when its thumbnail is clicked.
+     * @param onPickSeed called instead with the seed of a random board of the given size
+     *                   when its thumbnail is clicked.
+     */
+    public GalleryView(ColorRule rule, int size, long seed, int maxSize,
+                       Consumer<int[]> onPick, LongConsumer onPickSeed){
+        this.rule = rule;
+        this.onPick = onPick;
+        this.onPickSeed = onPickSeed;
+        palette = new int[rule.getColorCount() + 1]; // the last entry is transparent hexagons
+        for(int color = 0; color < rule.getColorCount(); color++){
+            palette[color] = toArgb(rule.getColor(color));
+        }
+        palette[rule.getColorCount()] = 0xFFDDDDDD;
+
+        workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "gallery-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        ChoiceBox<Source> sourcePicker = new ChoiceBox<>();
+        sourcePicker.getItems().addAll(createSources(size, seed, maxSize));
+        sourcePicker.valueProperty().addListener((observableValue, oldValue, newValue) -> showSource(newValue));
+        HBox sourceBox = new HBox(10, new Label("Boards"), sourcePicker);
+        sourceBox.setAlignment(Pos.CENTER);
+        sourceBox.setPadding(new Insets(10, 10, 10, 10));
+
+        lines = new ListView<>();
+        lines.setFixedCellSize(LINE_HEIGHT);
+        lines.setCellFactory(listView -> new ThumbnailLine());
+        VBox.setVgrow(lines, Priority.ALWAYS);
+
+        stage = new Stage();
+        stage.setTitle("Gallery - " + rule.getName());
+        stage.setScene(new Scene(new VBox(sourceBox, lines),
+                THUMBNAILS_PER_LINE * (THUMBNAIL_WIDTH + 10) + 40, 5 * LINE_HEIGHT + 60));
+        stage.setOnHidden(e -> workers.shutdownNow());
+
+        sourcePicker.setValue(sourcePicker.getItems().get(0));
+    }
+
+    /**
+     * Shows the gallery window.
+     */
+    protected void show(){
+        stage.show();
+    }
+
+    /**
+     * Creates the boards the gallery can show.
+     */
+    private List<Source> createSources(int size, long seed, int maxSize){
+        ArrayList<Source> sources = new ArrayList<>();
+        int colorCount = rule.getColorCount();
+
+        // Every starting row of each small size, the board number written in base k
+        long count = colorCount;
+        for(int length = 2; count * colorCount <= MAX_ENUMERATED_BOARDS && colorCount > 1; length++){
+            count *= colorCount;
+            int rowLength = length;
+            sources.add(new Source("Every row of size " + length, (int) count, board -> {
+                int[] startingRow = new int[rowLength];
+                int digits = board;
+                for(int i = rowLength - 1; i >= 0; i--){
+                    startingRow[i] = digits % colorCount;
+                    digits /= colorCount;
+                }
+                return startingRow;
+            }, board -> "#" + board, null));
+        }
+
+        // Each Pascalinacci size with every pair of corner colors around the current seed's row
+        int[] sizes = IntStream.iterate(0, n -> n + 1).map(BoardController::getPascalinacciNumber)
+                .takeWhile(length -> length <= maxSize).toArray();
+        int pairs = colorCount * colorCount;
+        sources.add(new Source("Pascalinacci sizes, every pair of corners", sizes.length * pairs, board -> {
+            int[] startingRow = BoardModel.createRandomStartingRow(sizes[board / pairs], seed, rule);
+            startingRow[0] = board % pairs / colorCount;
+            startingRow[startingRow.length - 1] = board % colorCount;
+            return startingRow;
+        }, board -> sizes[board / pairs] + ": " + (board % pairs / colorCount) + " " + (board % colorCount), null));
+
+        // Random boards of the current size, from the seeds following the current one
+        sources.add(new Source("Random boards of size " + size, RANDOM_BOARDS,
+                board -> BoardModel.createRandomStartingRow(size, seed + board, rule),
+                board -> StartingRowGenerator.formatSeed(seed + board), board -> seed + board));
+        return sources;
+    }
+
+    /**
+     * Shows the thumbnails of other boards, dropping the thumbnails of the old ones.
+     * @param newSource the boards to show.
+     */
+    private void showSource(Source newSource){
+        source = newSource;
+        generation++;
+        thumbnails.clear();
+        pendingBoards.clear();
+        int lineCount = (source.count() + THUMBNAILS_PER_LINE - 1) / THUMBNAILS_PER_LINE;
+        lines.getItems().setAll(IntStream.range(0, lineCount).boxed().toList());
+        lines.scrollTo(0);
+        lines.refresh();
+    }
+
+    /**
+     * Gets the thumbnail of a board, or starts drawing it.
+     * @param board the number of the board in the current source.
+     * @return the thumbnail, or null while it is being drawn.
+     */
+    private WritableImage getThumbnail(int board){
+        WritableImage thumbnail = thumbnails.get(board);
+        if(thumbnail == null && pendingBoards.add(board)){
+            Source drawnSource = source;
+            int drawnGeneration = generation;
+            workers.execute(() -> drawThumbnail(drawnSource, board, drawnGeneration));
+        }
+        return thumbnail;
+    }
+
+    /**
+     * Computes a board and draws its thumbnail. Runs on a gallery worker.
+     */
+    private void drawThumbnail(Source drawnSource, int board, int drawnGeneration){
+        int[] pixels = null;
+        if(shownLines.contains(board / THUMBNAILS_PER_LINE)){ // else scrolled away before its turn
+            BoardModel model = new BoardModel(drawnSource.startingRow().apply(board), rule);
+            pixels = drawPixels(model);
+        }
+        int[] drawnPixels = pixels;
+        Platform.runLater(() -> {
+            if(drawnGeneration != generation){ return; }
+            pendingBoards.remove(board);
+            if(drawnPixels == null){ return; }
+            WritableImage thumbnail = new WritableImage(THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT);
+            thumbnail.getPixelWriter().setPixels(0, 0, THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT,
+                    PixelFormat.getIntArgbInstance(), drawnPixels, 0, THUMBNAIL_WIDTH);
+            thumbnails.put(board, thumbnail);
+            for(ThumbnailLine cell : getCells()){
+                cell.showThumbnail(board, thumbnail);
+            }
+        });
+    }
+
+    /**
+     * Finds the cells of the list. The list drops its cells and creates new ones on
+     * refresh, so only the cells it currently holds are looked up, never kept.
+     * @return the visible cells of the list.
+     */
+    private List<ThumbnailLine> getCells(){
+        ArrayList<ThumbnailLine> cells = new ArrayList<>();
+        for(Node node : lines.lookupAll(".list-cell")){
+            if(node instanceof ThumbnailLine cell && cell.isVisible()){
+                cells.add(cell);
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Publishes the lines shown by the cells of the list to the workers.
+     * @param updated a cell that has just changed line, which may not be in the list yet.
+     */
+    private void updateShownLines(ThumbnailLine updated){
+        HashSet<Integer> shown = new HashSet<>();
+        for(ThumbnailLine cell : getCells()){
+            if(cell.shownLine >= 0){ shown.add(cell.shownLine); }
+        }
+        if(updated.shownLine >= 0){ shown.add(updated.shownLine); }
+        shownLines = shown;
+    }
+
+    /**
+     * Draws a board as a triangle of colored cells, each row shifted half a cell
+     * right of the row above like the hexagons of the main board.
+     * @param model the board to draw.
+     * @return the ARGB pixels of the thumbnail, row by row.
+     */
+    private int[] drawPixels(BoardModel model){
+        int[] pixels = new int[THUMBNAIL_WIDTH * THUMBNAIL_HEIGHT];
+        int length = model.getStartingRowLength();
+        double cellWidth = (double) THUMBNAIL_WIDTH / length;
+        int colorCount = rule.getColorCount();
+        for(int y = 0; y < THUMBNAIL_HEIGHT; y++){
+            int row = y * length / THUMBNAIL_HEIGHT;
+            double rowStart = row * cellWidth / 2;
+            for(int x = 0; x < THUMBNAIL_WIDTH; x++){
+                int column = (int) Math.floor((x - rowStart) / cellWidth);
+                if(column < 0 || column >= length - row){ continue; } // outside the triangle
+                int colorIndex = model.getColor(row, column);
+                pixels[y * THUMBNAIL_WIDTH + x] = palette[colorIndex >= 0 && colorIndex < colorCount ? colorIndex : colorCount];
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * Loads a board into the main window, a random board by its seed. A gallery drawn
+     * with another rule than the active one is closed instead, since its boards may use
+     * colors the rule lacks.
+     * @param board the number of the board in the current source.
+     */
+    private void pick(int board){
+        if(ColorRule.getActiveRule() != rule){
+            stage.close();
+            return;
+        }
+        if(source.seed() != null){
+            onPickSeed.accept(source.seed().applyAsLong(board));
+        }else{
+            onPick.accept(source.startingRow().apply(board));
+        }
+    }
+
+    private static int toArgb(Color color){
+        return (int) Math.round(color.getOpacity() * 255) << 24
+                | (int) Math.round(color.getRed() * 255) << 16
+                | (int) Math.round(color.getGreen() * 255) << 8
+                | (int) Math.round(color.getBlue() * 255);
+    }
+
+    /**
+     * A line of thumbnails in the list.
+     */
+    private class ThumbnailLine extends ListCell<Integer> {
+
+        private final HBox line = new HBox(10);
+        private final VBox[] boxes = new VBox[THUMBNAILS_PER_LINE];
+        private final ImageView[] views = new ImageView[THUMBNAILS_PER_LINE];
+        private final Label[] labels = new Label[THUMBNAILS_PER_LINE];
+        private int shownLine = -1;
+
+        ThumbnailLine(){
+            for(int i = 0; i < THUMBNAILS_PER_LINE; i++){
+                views[i] = new ImageView();
+                views[i].setFitWidth(THUMBNAIL_WIDTH);
+                views[i].setFitHeight(THUMBNAIL_HEIGHT);
+                labels[i] = new Label();
+                labels[i].setStyle(TEXT_STYLE);
+                boxes[i] = new VBox(2, views[i], labels[i]);
+                boxes[i].setAlignment(Pos.TOP_CENTER);
+                boxes[i].setMinWidth(THUMBNAIL_WIDTH);
+                int position = i;
+                boxes[i].setOnMouseClicked(e -> {
+                    if(shownLine >= 0){
+                        pick(shownLine * THUMBNAILS_PER_LINE + position);
+                    }
+                });
+            }
+            line.getChildren().addAll(boxes);
+        }
+
+        @Override
+        protected void updateItem(Integer item, boolean empty){
+            super.updateItem(item, empty);
+            if(empty || item == null){
+                shownLine = -1;
+                updateShownLines(this);
+                setGraphic(null);
+                return;
+            }
+            shownLine = item;
+            updateShownLines(this);
+            for(int i = 0; i < THUMBNAILS_PER_LINE; i++){
+                int board = shownLine * THUMBNAILS_PER_LINE + i;
+                boolean onBoard = board < source.count();
+                boxes[i].setVisible(onBoard);
+                if(onBoard){
+                    labels[i].setText(source.label().apply(board));
+                    views[i].setImage(getThumbnail(board));
+                }
+            }
+            setGraphic(line);
+        }
+
+        /**
+         * Shows a finished thumbnail if this line shows its board.
+         */
+        void showThumbnail(int board, WritableImage thumbnail){
+            if(shownLine == board / THUMBNAILS_PER_LINE){
+                views[board % THUMBNAILS_PER_LINE].setImage(thumbnail);
+            }
+        }
+    }
+}
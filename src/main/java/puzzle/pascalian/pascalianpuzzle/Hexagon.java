@@ -17,6 +17,7 @@ public class Hexagon extends Polygon {
     private int colorIndex;
     private Color borderColor;
     private int row;
+    private int index;
     // The points that make up the hexagon (these will be adjusted if the hexagon is scaled)
     private Double[] points = new Double[] {
             20.0,  5.0,
@@ -75,65 +76,21 @@ public class Hexagon extends Polygon {
      * be transparent.
      * @param leftColorIndex the color index of the left parent
      * @param rightColorIndex the color index of the right parent
-     * @return
+     * @return the color index of the child
      */
     public int getNextColorIndex(int leftColorIndex, int rightColorIndex){
-        int nextColorIndex = -1;
-        if(leftColorIndex == -1 || rightColorIndex == -1) {
-            return colorIndex;
-        }
-        if(leftColorIndex == rightColorIndex){
-            nextColorIndex = leftColorIndex;
-        }else {
-            int parentCompositeIndex = leftColorIndex + rightColorIndex;
-            switch (parentCompositeIndex){
-                case 1 -> { // 0 and 1 are parents
-                    nextColorIndex = 2;
-                    break;
-                }
-                case 2 -> { // 0 and 2 are parents
-                    nextColorIndex = 1;
-                    break;
-                }
-                case 3 -> { // 1 and 2 are parents
-                    nextColorIndex = 0;
-                    break;
-                }
-            }
-        }
-
-        return nextColorIndex;
+        return ColorRule.getActiveRule().getNextColorIndex(leftColorIndex, rightColorIndex, colorIndex);
     }
 
     /**
      * Sets the color of the hexagon.
      * @param index the color index of the hexagon:
-     *             0-Blue, 1-Red, 2-Yellow, or -1 for Transparent
+     *             0-Blue, 1-Red, 2-Yellow, or -1 for Transparent.
+     *             Rules with more colors continue the palette of the active ColorRule.
      */
     public void setColor(int index){
         this.colorIndex = index;
-        switch (index) {
-
-            case -1 -> {
-                fillColor = Color.TRANSPARENT;
-            }
-            case 0 -> {
-                fillColor = Color.BLUE;
-                break;
-            }
-            case 1 -> {
-                fillColor = Color.RED;
-                break;
-            }
-            case 2 -> {
-                fillColor = Color.YELLOW;
-                break;
-            }
-            default -> {
-                fillColor = Color.BLACK;
-                System.out.println("Unexpected value: " + colorIndex);
-            }
-        }
+        fillColor = ColorRule.getActiveRule().getColor(index);
         fillProperty().setValue(fillColor);
     }
 
@@ -143,21 +100,27 @@ public class Hexagon extends Polygon {
 
     /**
      * Changes the color from Blue->Red->Yellow->Blue with a left click and
-     * from Blue->Yellow->Red->Blue (reverse) with a right click.
+     * from Blue->Yellow->Red->Blue (reverse) with a right click. With rules of
+     * more or fewer colors, the colors cycle through the rule's palette.
+     * Clicks below the starting row do nothing while BoardView only allows
+     * starting row clicks.
      * @param mb the mouse button clicked: MouseButton.PRIMARY (left click) or
      *           MouseButton.SECONDARY (right click) are valid options. Any
      *           other input does nothing.
      */
     private void shiftColor(MouseButton mb){
+        if(row != 0 && BoardView.isStartingRowOnly()){ return; }
         int oldColorIndex = colorIndex;
+        int colorCount = ColorRule.getActiveRule().getColorCount();
         if(mb == MouseButton.PRIMARY){
-            setColor( (colorIndex + 1) % 3);
+            setColor( (colorIndex + 1) % colorCount);
         }else if (mb == MouseButton.SECONDARY){
-            setColor( (colorIndex +2) % 3);
+            setColor( (colorIndex + colorCount - 1) % colorCount);
         }else{
             return;
         }
 
+        BoardView.recordEdit(this, oldColorIndex, mb == MouseButton.SECONDARY);
         BoardView.setUpdating();
         BoardView.updateBoard();
     }
@@ -173,4 +136,16 @@ public class Hexagon extends Polygon {
      * @return the current row value stored in the hexagon.
      */
     public int getRow(){ return this.row; }
+
+    /**
+     * Sets the position of the hexagon on the board.
+     * @param index the index of the hexagon, in the same order as the BoardController.
+     */
+    public void setIndex(int index){ this.index = index; }
+
+    /**
+     * Gets the position of the hexagon on the board.
+     * @return the index of the hexagon, in the same order as the BoardController.
+     */
+    public int getIndex(){ return this.index; }
 }
@@ -15,28 +15,39 @@ public class Main extends Application {
 
     private BoardView boardView;
     private ControlsView controlsView;
+    private RowStatsView rowStatsView;
     private BoardController boardController;
 
     @Override
     public void start(Stage stage) throws IOException {
 
         boardController = new BoardController();
+        rowStatsView = new RowStatsView(boardController); // before the board is set up, to count it
         boardView = new BoardView(boardController);
         controlsView = new ControlsView(boardView, WIDTH);
 
         BorderPane window = new BorderPane();
-        GridPane board = boardView.getBoard();
+        Region board = boardView.getBoard();
         VBox controlsBar = controlsView.getControlsBar();
 
         window.setTop(controlsBar);
         window.setCenter(board);
+        window.setRight(rowStatsView.getPanel());
 
-        Scene scene = new Scene(window, WIDTH, HEIGHT);
+        Scene scene = new Scene(window, WIDTH + RowStatsView.PANEL_WIDTH, HEIGHT);
         scene.getStylesheets().add("file:src/main/java/puzzle/pascalian/pascalianpuzzle/stylesheet.css");
+        BoardMetrics.watchScene(scene);
 
         stage.setTitle("Pascallian Puzzle");
         stage.setScene(scene);
         stage.show();
     }
 
+    /**
+     * @return the board view, once the stage has been started.
+     */
+    protected BoardView getBoardView(){
+        return boardView;
+    }
+
 }
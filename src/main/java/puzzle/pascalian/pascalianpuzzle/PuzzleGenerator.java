@@ -0,0 +1,410 @@
+package puzzle.pascalian.pascalianpuzzle;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+/**
+ * Generates puzzles of the form "make the bottom hexagon X in k clicks without
+ * changing the pinned hexagons", each with exactly one solution of the fewest clicks.
+ * Puzzles are played by clicking the starting row only, as a click below it can set
+ * any hexagon under it, and one click on the apex would solve every puzzle. Each
+ * puzzle says so in its "clickable" field, and BoardView ignores the other rows
+ * while starting row only clicks are on.
+ *
+ * The board of a puzzle is the random board BoardView sets up for the puzzle's
+ * seed. For a linear rule, such as the Pascalian rule over GF(3), the change of
+ * every hexagon is a linear combination of the changes made to the starting row,
+ * so a puzzle is a small linear system: one equation for the apex and one for
+ * each pinned hexagon. Each starting row hexagon is a column of the system and
+ * costs one click per color step, in whichever direction is shorter.
+ *
+ * A puzzle starts from a planted set of k clicks. Every set of at most k clicks
+ * is then checked against the system; whenever another set also solves it, a
+ * hexagon that the other set changes and the planted set doesn't is pinned, and
+ * the check starts again. Once the check finds nothing else, the planted set is
+ * proven to be the only solution of k clicks and no fewer clicks solve the puzzle.
+ *
+ * Puzzles are generated on every core and streamed to the output file as one
+ * JSON object per line, in the order they are found. Generating gives up after
+ * trying MAX_ATTEMPTS_PER_PUZZLE boards for each puzzle, so a size, click count
+ * and rule no board makes a puzzle of fail rather than run forever.
+ *
+ * Run with:
+ *   java puzzle.pascalian.pascalianpuzzle.PuzzleGenerator [count] [clicks] [size] [file] [seed] [rule name]
+ */
+public class PuzzleGenerator {
+
+    private final static int DEFAULT_COUNT = 10_000;
+    private final static int DEFAULT_CLICKS = 3;
+    private final static int DEFAULT_SIZE = 28; // the size of the board the game starts with
+    private final static String DEFAULT_FILE = "puzzles.jsonl";
+    private final static int LANE_BITS = 4;
+    private final static int MAX_PINNED = Long.SIZE / LANE_BITS - 1; // one lane is the apex
+    private final static long LANE_HIGH_BITS = 0x8888_8888_8888_8888L;
+    private final static long LANE_ONES = 0x1111_1111_1111_1111L;
+    private final static int QUEUE_CAPACITY = 4096;
+    private final static long MAX_ATTEMPTS_PER_PUZZLE = 1000; // about 1 in 5 boards of 28 makes a puzzle of 5 clicks
+    private final static String FAILED = new String("failed"); // compared by identity, never a puzzle
+
+    private final int size;
+    private final int clicks;
+    private final ColorRule rule;
+    private final int colorCount;
+    private final int[] apexCoefficients;
+    private final int[] apexColumns;     // the starting row hexagons that change the apex
+    private final long laneOffset;       // 8 - k in every lane, so lanes holding k or more reach 8
+    private final long laneColorCount;   // k in every lane
+
+    /**
+     * Constructor.
+     * @param size the number of hexagons in the starting row.
+     * @param clicks the fewest clicks every puzzle should need.
+     * @param rule a linear rule giving the color of a child from its parents.
+     * @throws IllegalArgumentException if the rule is not linear or there are more clicks than hexagons.
+     */
+    public PuzzleGenerator(int size, int clicks, ColorRule rule){
+        if(!rule.isLinear()){
+            throw new IllegalArgumentException(rule.getName() + " is not a linear rule");
+        }
+        if(size < 3 || clicks < 1 || clicks > size){
+            throw new IllegalArgumentException("Puzzles need 3 or more hexagons per row and 1 to " + size + " clicks");
+        }
+        this.size = size;
+        this.clicks = clicks;
+        this.rule = rule;
+        this.colorCount = rule.getColorCount();
+        this.apexCoefficients = rule.getCoefficients(size - 1);
+        this.apexColumns = IntStream.range(0, size).filter(j -> apexCoefficients[j] != 0).toArray();
+        this.laneOffset = (8 - colorCount) * LANE_ONES;
+        this.laneColorCount = colorCount * LANE_ONES;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_COUNT;
+        int clicks = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_CLICKS;
+        int size = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_SIZE;
+        Path file = Path.of(args.length > 3 ? args[3] : DEFAULT_FILE);
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : System.nanoTime();
+        ColorRule rule = args.length > 5 ? ColorRule.forName(args[5]) : ColorRule.PASCALIAN;
+        if(rule == null){
+            throw new IllegalArgumentException("Unknown rule: " + args[5]);
+        }
+
+        PuzzleGenerator generator = new PuzzleGenerator(size, clicks, rule);
+        long start = System.nanoTime();
+        long attempts = generator.generate(count, seed, Runtime.getRuntime().availableProcessors(), file);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d puzzles (%d boards tried) written to %s in %.2f s, %.0f puzzles per minute%n",
+                count, attempts, file, seconds, count / seconds * 60);
+    }
+
+    /**
+     * Generates puzzles on several threads and writes them to a file as they are found.
+     * Threads take the board seeds in turn, so which boards end up in the file depends
+     * on timing, but every puzzle records the seed of its board and generating from
+     * that seed again always gives the same puzzle.
+     * @param count the number of puzzles to generate.
+     * @param seed the seed the board seeds are derived from.
+     * @param threads the number of threads generating puzzles.
+     * @param file the file to write the puzzles to, one JSON object per line.
+     * @return the number of boards tried.
+     * @throws IOException if the file cannot be written.
+     * @throws IllegalStateException if generating a puzzle failed on a worker, or no puzzle
+     *         was found on MAX_ATTEMPTS_PER_PUZZLE boards for each puzzle.
+     */
+    protected long generate(int count, long seed, int threads, Path file) throws IOException, InterruptedException {
+        BlockingQueue<String> found = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        AtomicLong nextAttempt = new AtomicLong();
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        long maxAttempts = count * MAX_ATTEMPTS_PER_PUZZLE;
+
+        for(int t = 0; t < threads; t++){
+            workers.execute(() -> {
+                try {
+                    while(accepted.get() < count && !Thread.currentThread().isInterrupted()){
+                        long attempt = nextAttempt.getAndIncrement();
+                        if(attempt >= maxAttempts){
+                            throw new IllegalStateException("Only " + accepted.get() + " of " + count
+                                    + " puzzles found on " + maxAttempts + " boards");
+                        }
+                        String puzzle = generate(StartingRowGenerator.mix(seed + attempt));
+                        if(puzzle == null){ continue; }
+                        if(accepted.incrementAndGet() > count){ break; }
+                        found.put(puzzle);
+                    }
+                } catch (InterruptedException e) {
+                    // Shut down by the writer
+                } catch (RuntimeException | Error e) {
+                    // The writer may be waiting for puzzles that will never come, waking it up
+                    failure.compareAndSet(null, e);
+                    try {
+                        found.put(FAILED);
+                    } catch (InterruptedException ignored) {
+                        // Shut down by the writer
+                    }
+                }
+            });
+        }
+
+        // Writing on this thread, so the workers never wait on the disk
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for(int written = 0; written < count; written++){
+                String puzzle = found.take();
+                if(puzzle == FAILED){
+                    throw new IllegalStateException("Generating a puzzle failed", failure.get());
+                }
+                writer.write(puzzle);
+                writer.newLine();
+            }
+        } finally {
+            workers.shutdownNow();
+            workers.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        return nextAttempt.get();
+    }
+
+    /**
+     * Tries to make a puzzle from the random board of a seed.
+     * @param seed the seed of the board, as passed to BoardView.setupBoard.
+     * @return the puzzle as a JSON object, or null if no hexagons could be pinned that
+     *         leave the planted clicks the only solution.
+     */
+    protected String generate(long seed){
+        int[] startingRow = BoardModel.createRandomStartingRow(size, seed, rule);
+        SplittableRandom random = new SplittableRandom(seed);
+
+        // Planting single step clicks, one of them on a hexagon that changes the apex
+        int[] planted = new int[size];
+        planted[apexColumns[random.nextInt(apexColumns.length)]] = random.nextBoolean() ? 1 : colorCount - 1;
+        random.ints(0, size).filter(j -> planted[j] == 0).distinct().limit(clicks - 1)
+                .forEach(j -> planted[j] = random.nextBoolean() ? 1 : colorCount - 1);
+        // The rule is linear, so the board of the changes alone is how much every hexagon changes
+        BoardModel plantedChanges = new BoardModel(planted, rule);
+        if(plantedChanges.getApexColor() == 0){
+            return null;
+        }
+        int apexColor = BoardModel.computeApexColor(startingRow, rule);
+        int targetColor = (apexColor + plantedChanges.getApexColor()) % colorCount;
+
+        // Columns of the system: how each starting row hexagon changes the apex and every pinned hexagon
+        long[] columns = new long[size];
+        for(int j = 0; j < size; j++){
+            columns[j] = apexCoefficients[j];
+        }
+        long target = plantedChanges.getApexColor(); // the apex changes, nothing pinned does
+        ArrayList<Integer> pinned = new ArrayList<>();
+        while(true){
+            int[] other = new Search(columns, target, planted).findOther();
+            if(other == null){
+                return toJson(seed, startingRow, targetColor, pinned, planted);
+            }
+            if(pinned.size() == MAX_PINNED){
+                return null;
+            }
+            int pin = pickPin(plantedChanges, new BoardModel(other, rule), random);
+            if(pin < 0){
+                return null;
+            }
+            // Adding the pinned hexagon's equation as the next lane of every column
+            int row = getRow(pin);
+            int col = pin - plantedChanges.getRowStart(row);
+            int[] coefficients = rule.getCoefficients(row);
+            pinned.add(pin);
+            for(int i = 0; i <= row; i++){
+                columns[col + i] |= (long) coefficients[i] << (LANE_BITS * pinned.size());
+            }
+        }
+    }
+
+    /**
+     * Picks a hexagon below the starting row and above the apex that the other solution
+     * changes and the planted one doesn't, so pinning it rules the other solution out.
+     * @param plantedChanges the change of every hexagon made by the planted clicks.
+     * @param otherChanges the change of every hexagon made by the other solution.
+     * @param random the source of the pick.
+     * @return the index of the hexagon, or -1 if there is none.
+     */
+    private int pickPin(BoardModel plantedChanges, BoardModel otherChanges, SplittableRandom random){
+        int[] candidates = new int[plantedChanges.getCellCount()];
+        int count = 0;
+        for(int i = size; i < plantedChanges.getCellCount() - 1; i++){
+            if(plantedChanges.getColorFromIndex(i) == 0 && otherChanges.getColorFromIndex(i) != 0){
+                candidates[count++] = i;
+            }
+        }
+        return count == 0 ? -1 : candidates[random.nextInt(count)];
+    }
+
+    private int getRow(int index){
+        int row = 0;
+        int rowStart = 0;
+        while(index >= rowStart + size - row){
+            rowStart += size - row;
+            row++;
+        }
+        return row;
+    }
+
+    /**
+     * Searches every set of at most the wanted number of clicks for one that reaches the
+     * target other than the planted set. The change of every constraint is packed into
+     * one long, one constraint per 4 bit lane, so adding a column to the change is a few
+     * arithmetic operations. The last click of each set is looked up rather than searched for.
+     */
+    private class Search {
+
+        private final long target;
+        private final int[] planted;
+        private final long[] steps;      // every click's change, sorted, for looking up the last click
+        private final int[] stepColumns; // the column and color step of each click, column << 8 | step
+        private final int[] chosen;      // column << 8 | step of the clicks of the set being searched
+        private int[] other;
+
+        private Search(long[] columns, long target, int[] planted){
+            this.target = target;
+            this.planted = planted;
+            chosen = new int[clicks];
+
+            // Every single click: each hexagon that changes something, moved each number of colors
+            int count = 0;
+            long[] unsorted = new long[columns.length * (colorCount - 1)];
+            int[] unsortedColumns = new int[unsorted.length];
+            for(int j = 0; j < columns.length; j++){
+                if(columns[j] == 0){ continue; }
+                long scaled = 0;
+                for(int step = 1; step < colorCount; step++){
+                    scaled = add(scaled, columns[j]);
+                    unsorted[count] = scaled;
+                    unsortedColumns[count++] = j << 8 | step;
+                }
+            }
+            Integer[] order = new Integer[count];
+            for(int i = 0; i < count; i++){ order[i] = i; }
+            Arrays.sort(order, (a, b) -> Long.compare(unsorted[a], unsorted[b]));
+            steps = new long[count];
+            stepColumns = new int[count];
+            for(int i = 0; i < count; i++){
+                steps[i] = unsorted[order[i]];
+                stepColumns[i] = unsortedColumns[order[i]];
+            }
+        }
+
+        /**
+         * @return the change of each starting row hexagon of a set of at most the wanted
+         *         clicks that reaches the target and isn't the planted set, or null if none.
+         */
+        private int[] findOther(){
+            search(0, 0, 0L, 0);
+            return other;
+        }
+
+        /**
+         * @param depth the number of clicks chosen so far.
+         * @param firstColumn the first column the next click may be in, so each set is searched once.
+         * @param change the change made by the clicks chosen so far.
+         * @param cost the clicks chosen so far, counting a two color step as two clicks.
+         */
+        private void search(int depth, int firstColumn, long change, int cost){
+            // Looking up the click that finishes the set
+            long needed = subtract(target, change);
+            for(int i = lowerBound(needed); i < steps.length && steps[i] == needed; i++){
+                int column = stepColumns[i] >>> 8;
+                if(column < firstColumn || cost + getClicks(stepColumns[i] & 0xFF) > clicks){ continue; }
+                chosen[depth] = stepColumns[i];
+                int[] found = new int[size];
+                for(int c = 0; c <= depth; c++){
+                    found[chosen[c] >>> 8] = chosen[c] & 0xFF;
+                }
+                if(!Arrays.equals(found, planted)){
+                    other = found;
+                    return;
+                }
+            }
+
+            // Choosing one more click that leaves room for the last one
+            for(int s = 0; s < steps.length && other == null; s++){
+                int column = stepColumns[s] >>> 8;
+                int stepClicks = getClicks(stepColumns[s] & 0xFF);
+                if(column < firstColumn || cost + stepClicks + 1 > clicks){ continue; }
+                chosen[depth] = stepColumns[s];
+                search(depth + 1, column + 1, add(change, steps[s]), cost + stepClicks);
+            }
+        }
+
+        private int lowerBound(long key){
+            int low = 0;
+            int high = steps.length;
+            while(low < high){
+                int middle = (low + high) >>> 1;
+                if(steps[middle] < key){
+                    low = middle + 1;
+                }else{
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    // A color step in the shorter direction, e.g. +2 is one right click with 3 colors
+    private int getClicks(int step){
+        return Math.min(step, colorCount - step);
+    }
+
+    /**
+     * Adds two changes lane by lane mod k. Each lane holds at most 2k - 2 after the sum,
+     * which fits in 4 bits for every prime k of the palette.
+     */
+    private long add(long a, long b){
+        long sum = a + b;
+        long wrapped = ((sum + laneOffset) & LANE_HIGH_BITS) >>> (LANE_BITS - 1); // 1 in every lane holding k or more
+        return sum - wrapped * colorCount;
+    }
+
+    private long subtract(long a, long b){
+        return add(a, laneColorCount - b);
+    }
+
+    private String toJson(long seed, int[] startingRow, int targetColor, ArrayList<Integer> pinned, int[] solution){
+        StringBuilder json = new StringBuilder(128 + 2 * startingRow.length);
+        json.append("{\"seed\":").append(seed)
+                .append(",\"size\":").append(size)
+                .append(",\"rule\":\"").append(rule.getName())
+                .append("\",\"row\":\"");
+        for(int colorIndex : startingRow){
+            json.append(colorIndex);
+        }
+        json.append("\",\"target\":").append(targetColor).append(",\"pinned\":[");
+        for(int p = 0; p < pinned.size(); p++){
+            if(p > 0){ json.append(','); }
+            json.append(pinned.get(p)); // in the same order as the BoardController
+        }
+        json.append("],\"clicks\":").append(clicks)
+                .append(",\"clickable\":\"starting row\",\"solution\":[");
+        ArrayList<String> steps = new ArrayList<>();
+        for(int j = 0; j < solution.length; j++){
+            if(solution[j] == 0){ continue; }
+            // A left click moves one color forward, a right click one color back
+            boolean right = solution[j] > colorCount - solution[j];
+            steps.add("{\"index\":" + j + ",\"color\":" + (startingRow[j] + solution[j]) % colorCount
+                    + ",\"button\":\"" + (right ? "right" : "left") + "\"}");
+        }
+        return json.append(String.join(",", steps)).append("]}").toString();
+    }
+}
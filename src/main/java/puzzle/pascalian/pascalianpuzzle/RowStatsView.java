@@ -0,0 +1,244 @@
+package puzzle.pascalian.pascalianpuzzle;
+
+import javafx.application.Platform;
+import javafx.collections.ListChangeListener;
+import javafx.geometry.Insets;
+import javafx.scene.control.ContentDisplay;
+import javafx.scene.control.Label;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A panel beside the board showing, for every row, how many hexagons have each
+ * color and how many would have to change for the row to be a single color, with
+ * the apex color on top.
+ *
+ * The counts are never recounted from the board. The panel listens to the color
+ * indices of the BoardController, and every change to them (from setRowColors
+ * during propagation, a click, a clear or a new board) moves one hexagon from its
+ * old color to its new color in the counts of its row, so an update costs the
+ * number of hexagons that changed. Changed rows are marked dirty and all of them
+ * are redrawn in a single FX update, however many changes arrived before it ran.
+ */
+public class RowStatsView implements ListChangeListener<Integer> {
+
+    protected final static int PANEL_WIDTH = 190;
+    private final static int SWATCH_SIZE = 10;
+    private final static String TEXT_STYLE = "-fx-font-size: 12; -fx-font-weight: normal;";
+
+    private final BoardController boardController;
+    private final VBox rowsBox;
+    private final ScrollPane panel;
+    private final Label apexLabel;
+    private final ArrayList<Label[]> rowLabels = new ArrayList<>();
+
+    // Counts, guarded by this, changed on whichever thread changes the board
+    private int startingRowLength;
+    private int colorCount;
+    private Color[] colors;
+    private int[][] rowCounts; // [row][color], the last color being transparent
+    private int[] rowOfIndex;
+    private int apexColor;
+    private int layoutVersion;
+    private final BitSet dirtyRows = new BitSet();
+
+    // FX thread state
+    private int shownLayoutVersion = -1;
+    private final AtomicBoolean refreshQueued = new AtomicBoolean(false);
+
+    /**
+     * Constructor. Must be created before the BoardView, so it sees the first board being added.
+     * @param controller the BoardController holding the colors of the board.
+     */
+    public RowStatsView(BoardController controller){
+        boardController = controller;
+        apexLabel = new Label();
+        apexLabel.setStyle(TEXT_STYLE + " -fx-font-weight: bold;");
+        rowsBox = new VBox(2);
+        rowsBox.setPadding(new Insets(10, 10, 10, 10));
+        rowsBox.getChildren().add(apexLabel);
+        panel = new ScrollPane(rowsBox);
+        panel.setPrefWidth(PANEL_WIDTH);
+        panel.setMinWidth(PANEL_WIDTH);
+        panel.setFitToWidth(true);
+
+        synchronized(this){
+            resetCounts();
+        }
+        boardController.watchList(this);
+    }
+
+    @Override
+    public void onChanged(Change<? extends Integer> change){
+        synchronized(this){
+            while(change.next()){
+                if(change.wasPermutated()){ continue; } // never done to the board
+                int from = change.getFrom();
+                if(change.wasAdded() && !change.wasRemoved() && from == 0){
+                    resetCounts(); // a new board is being added
+                }
+                if(change.wasRemoved() && change.getList().isEmpty()){
+                    resetCounts(); // the board was emptied
+                    continue;
+                }
+                int removed = change.wasRemoved() ? change.getRemovedSize() : 0;
+                int added = change.wasAdded() ? change.getAddedSize() : 0;
+                for(int i = 0; i < Math.max(removed, added); i++){
+                    int oldColor = i < removed ? change.getRemoved().get(i) : Integer.MIN_VALUE;
+                    int newColor = i < added ? change.getAddedSubList().get(i) : Integer.MIN_VALUE;
+                    moveCell(from + i, oldColor, newColor);
+                }
+            }
+        }
+        queueRefresh();
+    }
+
+    /**
+     * Moves a hexagon from its old color to its new one in the counts of its row.
+     * @param index the index of the hexagon, in the same order as the BoardController.
+     * @param oldColor the old color index, or Integer.MIN_VALUE for a hexagon being added.
+     * @param newColor the new color index, or Integer.MIN_VALUE for a hexagon being removed.
+     */
+    private void moveCell(int index, int oldColor, int newColor){
+        if(oldColor == newColor || index >= rowOfIndex.length){ return; }
+        int row = rowOfIndex[index];
+        if(oldColor != Integer.MIN_VALUE){
+            rowCounts[row][slotOf(oldColor)]--;
+        }
+        if(newColor != Integer.MIN_VALUE){
+            rowCounts[row][slotOf(newColor)]++;
+        }
+        if(index == rowOfIndex.length - 1){
+            apexColor = newColor == Integer.MIN_VALUE ? BoardController.NOT_A_COLOR : newColor;
+        }
+        dirtyRows.set(row);
+    }
+
+    // Transparent hexagons, and colors a new rule has dropped, are counted in the last slot
+    private int slotOf(int colorIndex){
+        return colorIndex >= 0 && colorIndex < colorCount ? colorIndex : colorCount;
+    }
+
+    /**
+     * Empties the counts for a board of the current size and rule.
+     */
+    private void resetCounts(){
+        ColorRule rule = ColorRule.getActiveRule();
+        startingRowLength = boardController.getStartingRowLength();
+        colorCount = rule.getColorCount();
+        colors = new Color[colorCount];
+        for(int color = 0; color < colorCount; color++){
+            colors[color] = rule.getColor(color);
+        }
+        rowCounts = new int[startingRowLength][colorCount + 1];
+        rowOfIndex = new int[BoardModel.getCellCount(startingRowLength)];
+        int index = 0;
+        for(int row = 0; row < startingRowLength; row++){
+            for(int i = 0; i < startingRowLength - row; i++){
+                rowOfIndex[index++] = row;
+            }
+        }
+        apexColor = BoardController.NOT_A_COLOR;
+        layoutVersion++;
+        dirtyRows.clear();
+        dirtyRows.set(0, startingRowLength);
+    }
+
+    /**
+     * Queues a refresh of the panel on the FX thread, unless one is already queued.
+     */
+    private void queueRefresh(){
+        if(refreshQueued.compareAndSet(false, true)){
+            Platform.runLater(this::refresh);
+        }
+    }
+
+    /**
+     * Redraws the dirty rows. Runs on the FX thread.
+     */
+    private void refresh(){
+        refreshQueued.set(false);
+        int[][] counts;
+        BitSet dirty;
+        Color[] rowColors;
+        int apex;
+        int version;
+        synchronized(this){
+            version = layoutVersion;
+            rowColors = colors;
+            apex = apexColor;
+            dirty = (BitSet) dirtyRows.clone();
+            dirtyRows.clear();
+            counts = new int[rowCounts.length][];
+            for(int row = dirty.nextSetBit(0); row >= 0; row = dirty.nextSetBit(row + 1)){
+                counts[row] = rowCounts[row].clone();
+            }
+        }
+
+        if(version != shownLayoutVersion){
+            buildRows(counts.length, rowColors);
+            shownLayoutVersion = version;
+        }
+        boolean apexColored = apex >= 0 && apex < rowColors.length;
+        apexLabel.setText(apexColored ? "Apex" : "Apex: none");
+        apexLabel.setGraphic(apexColored ? new Rectangle(SWATCH_SIZE, SWATCH_SIZE, rowColors[apex]) : null);
+        apexLabel.setContentDisplay(ContentDisplay.RIGHT);
+        for(int row = dirty.nextSetBit(0); row >= 0; row = dirty.nextSetBit(row + 1)){
+            showRow(row, counts[row]);
+        }
+    }
+
+    /**
+     * Creates a line of labels for every row: the row, a count per color and the
+     * number of hexagons to change for a single color.
+     */
+    private void buildRows(int rowCount, Color[] rowColors){
+        rowLabels.clear();
+        rowsBox.getChildren().setAll(apexLabel);
+        for(int row = 0; row < rowCount; row++){
+            HBox line = new HBox(6);
+            Label[] labels = new Label[rowColors.length + 2];
+            labels[0] = new Label(String.format("%2d", row));
+            for(int color = 0; color < rowColors.length; color++){
+                labels[color + 1] = new Label();
+                labels[color + 1].setGraphic(new Rectangle(SWATCH_SIZE, SWATCH_SIZE, rowColors[color]));
+            }
+            labels[labels.length - 1] = new Label();
+            for(Label label : labels){
+                label.setStyle(TEXT_STYLE);
+            }
+            line.getChildren().addAll(labels);
+            rowLabels.add(labels);
+            rowsBox.getChildren().add(line);
+        }
+    }
+
+    private void showRow(int row, int[] counts){
+        Label[] labels = rowLabels.get(row);
+        int colors = counts.length - 1;
+        int largest = 0;
+        int length = 0;
+        for(int color = 0; color < colors; color++){
+            labels[color + 1].setText(String.valueOf(counts[color]));
+            largest = Math.max(largest, counts[color]);
+            length += counts[color];
+        }
+        length += counts[colors];
+        int toSolid = length - largest;
+        labels[labels.length - 1].setText(toSolid == 0 ? "solid" : toSolid + " to solid");
+    }
+
+    /**
+     * @return the panel showing the row statistics.
+     */
+    protected ScrollPane getPanel(){
+        return panel;
+    }
+}
@@ -0,0 +1,352 @@
+package puzzle.pascalian.pascalianpuzzle;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records what the user does to the board into a compact append-only log, so a
+ * session can be replayed later by SessionReplay. Every event is one type byte,
+ * the microseconds since the previous event and a few small values, written as
+ * variable length numbers. Random boards are recorded by their seed, never by
+ * their colors, so a replay builds exactly the same boards.
+ *
+ * Recording is off until start is called, and every record method does nothing
+ * while it is off. The log is flushed after each event, so a crash loses at most
+ * the event being written.
+ *
+ * @see SessionReplay
+ */
+public class SessionRecorder {
+
+    private final static int MAGIC = 0x50505331; // "PPS1"
+    private final static int VERSION = 3; // 2: random boards from StartingRowGenerator, 3: row event
+    private final static int MIN_READ_VERSION = 2; // older logs have other random boards
+
+    // Event types
+    protected final static int START = 0;   // size, rule name, animation speed
+    protected final static int RESET = 1;   // seed
+    protected final static int PATTERN = 2;
+    protected final static int CLEAR = 3;
+    protected final static int CLICK = 4;   // hexagon index and mouse button
+    protected final static int UNDO = 5;
+    protected final static int REDO = 6;
+    protected final static int SIZE = 7;    // size, seed
+    protected final static int SPEED = 8;   // animation speed
+    protected final static int RULE = 9;    // rule name, seed
+    protected final static int ROW = 10;    // starting row, e.g. picked in the gallery
+    protected final static String[] EVENT_NAMES =
+            {"start", "reset", "pattern", "clear", "click", "undo", "redo", "size", "speed", "rule", "row"};
+
+    private static DataOutputStream out;
+    private static long lastEventNanos;
+
+    /**
+     * A single event read back from a log. Only the values of the event's type are set.
+     */
+    protected record Event(int type, long micros, int size, int index, boolean secondary,
+                           long seed, double speed, String ruleName, int[] startingRow) {
+
+        @Override
+        public String toString(){
+            return EVENT_NAMES[type];
+        }
+    }
+
+    /**
+     * Starts recording to a new log, replacing any log being recorded.
+     * @param file the file to write the log to.
+     * @param size the number of hexagons in the starting row of the current board.
+     * @param ruleName the name of the active ColorRule.
+     * @param animationSpeed the animation speed slider value.
+     * @throws IOException if the file cannot be created.
+     */
+    protected static synchronized void start(Path file, int size, String ruleName, double animationSpeed)
+            throws IOException {
+        stop();
+        DataOutputStream log = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)));
+        log.writeInt(MAGIC);
+        log.writeByte(VERSION);
+        log.writeLong(System.currentTimeMillis());
+        out = log;
+        lastEventNanos = System.nanoTime();
+
+        beginEvent(START);
+        writeVarLong(size);
+        writeUTF(ruleName);
+        writeDouble(animationSpeed);
+        endEvent();
+    }
+
+    /**
+     * Stops recording and closes the log.
+     */
+    protected static synchronized void stop(){
+        if(out == null){ return; }
+        try {
+            out.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        out = null;
+    }
+
+    protected static synchronized boolean isRecording(){
+        return out != null;
+    }
+
+    protected static synchronized void recordReset(long seed){
+        if(beginEvent(RESET)){
+            writeLong(seed);
+            endEvent();
+        }
+    }
+
+    protected static synchronized void recordPattern(){
+        if(beginEvent(PATTERN)){ endEvent(); }
+    }
+
+    protected static synchronized void recordClear(){
+        if(beginEvent(CLEAR)){ endEvent(); }
+    }
+
+    /**
+     * @param index the index of the hexagon, in the same order as the BoardController.
+     * @param secondary true for a right click, false for a left click.
+     */
+    protected static synchronized void recordClick(int index, boolean secondary){
+        if(beginEvent(CLICK)){
+            writeVarLong(((long) index << 1) | (secondary ? 1 : 0));
+            endEvent();
+        }
+    }
+
+    protected static synchronized void recordUndo(){
+        if(beginEvent(UNDO)){ endEvent(); }
+    }
+
+    protected static synchronized void recordRedo(){
+        if(beginEvent(REDO)){ endEvent(); }
+    }
+
+    /**
+     * @param size the new number of hexagons in the starting row.
+     * @param seed the seed of the new random board.
+     */
+    protected static synchronized void recordSize(int size, long seed){
+        if(beginEvent(SIZE)){
+            writeVarLong(size);
+            writeLong(seed);
+            endEvent();
+        }
+    }
+
+    /**
+     * @param animationSpeed the animation speed slider value.
+     */
+    protected static synchronized void recordSpeed(double animationSpeed){
+        if(beginEvent(SPEED)){
+            writeDouble(animationSpeed);
+            endEvent();
+        }
+    }
+
+    /**
+     * @param ruleName the name of the new active ColorRule.
+     * @param seed the seed of the new random board.
+     */
+    protected static synchronized void recordRule(String ruleName, long seed){
+        if(beginEvent(RULE)){
+            writeUTF(ruleName);
+            writeLong(seed);
+            endEvent();
+        }
+    }
+
+    /**
+     * @param startingRow the color indices of a starting row that has no seed.
+     */
+    protected static synchronized void recordStartingRow(int[] startingRow){
+        if(beginEvent(ROW)){
+            writeVarLong(startingRow.length);
+            for(int colorIndex : startingRow){
+                writeVarLong(colorIndex + 1); // transparent is -1
+            }
+            endEvent();
+        }
+    }
+
+    /**
+     * Reads every event of a log. A log cut short in the middle of an event,
+     * e.g. by a crash, is read up to the last whole event.
+     * @param file the log to read.
+     * @return the events in the order they were recorded.
+     * @throws IOException if the file cannot be read or is not a session log.
+     */
+    protected static List<Event> read(Path file) throws IOException {
+        ArrayList<Event> events = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if(in.readInt() != MAGIC){
+                throw new IOException(file + " is not a session log");
+            }
+            int version = in.readUnsignedByte();
+            if(version < MIN_READ_VERSION || version > VERSION){
+                throw new IOException("Unsupported session log version " + version);
+            }
+            in.readLong(); // start time, only for people reading the log
+
+            while(true){
+                int type = in.read();
+                if(type == -1){ break; }
+                try {
+                    events.add(readEvent(in, type));
+                } catch (EOFException e) {
+                    break;
+                }
+            }
+        }
+        return events;
+    }
+
+    private static Event readEvent(DataInputStream in, int type) throws IOException {
+        long micros = readVarLong(in);
+        switch(type){
+            case START:
+                int size = (int) readVarLong(in);
+                String ruleName = in.readUTF();
+                return new Event(type, micros, size, 0, false, 0, in.readDouble(), ruleName, null);
+            case RESET:
+                return new Event(type, micros, 0, 0, false, in.readLong(), 0, null, null);
+            case CLICK:
+                long click = readVarLong(in);
+                return new Event(type, micros, 0, (int) (click >>> 1), (click & 1) == 1, 0, 0, null, null);
+            case SIZE:
+                int newSize = (int) readVarLong(in);
+                return new Event(type, micros, newSize, 0, false, in.readLong(), 0, null, null);
+            case SPEED:
+                return new Event(type, micros, 0, 0, false, 0, in.readDouble(), null, null);
+            case RULE:
+                String newRuleName = in.readUTF();
+                return new Event(type, micros, 0, 0, false, in.readLong(), 0, newRuleName, null);
+            case PATTERN:
+            case CLEAR:
+            case UNDO:
+            case REDO:
+                return new Event(type, micros, 0, 0, false, 0, 0, null, null);
+            case ROW:
+                int[] startingRow = new int[(int) readVarLong(in)];
+                for(int i = 0; i < startingRow.length; i++){
+                    startingRow[i] = (int) readVarLong(in) - 1;
+                }
+                return new Event(type, micros, startingRow.length, 0, false, 0, 0, null, startingRow);
+            default:
+                throw new IOException("Unknown session event type " + type);
+        }
+    }
+
+    /**
+     * Writes the type and the time since the previous event.
+     * @param type the event type.
+     * @return false if not recording.
+     */
+    private static boolean beginEvent(int type){
+        if(out == null){ return false; }
+        long now = System.nanoTime();
+        try {
+            out.writeByte(type);
+            writeVarLong((now - lastEventNanos) / 1000);
+        } catch (IOException e) {
+            fail(e);
+            return false;
+        }
+        lastEventNanos = now;
+        return true;
+    }
+
+    private static void endEvent(){
+        if(out == null){ return; }
+        try {
+            out.flush();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private static void writeLong(long value){
+        if(out == null){ return; }
+        try {
+            out.writeLong(value);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private static void writeDouble(double value){
+        if(out == null){ return; }
+        try {
+            out.writeDouble(value);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private static void writeUTF(String value){
+        if(out == null){ return; }
+        try {
+            out.writeUTF(value);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Writes a non-negative number 7 bits at a time, so small numbers take a single byte.
+     * @param value the number to write.
+     */
+    private static void writeVarLong(long value){
+        if(out == null){ return; }
+        try {
+            writeVarLong(out, value);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private static void writeVarLong(OutputStream stream, long value) throws IOException {
+        while((value & ~0x7FL) != 0){
+            stream.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        stream.write((int) value);
+    }
+
+    private static long readVarLong(InputStream stream) throws IOException {
+        long value = 0;
+        for(int shift = 0; shift < 64; shift += 7){
+            int b = stream.read();
+            if(b == -1){ throw new EOFException(); }
+            value |= (long) (b & 0x7F) << shift;
+            if((b & 0x80) == 0){
+                return value;
+            }
+        }
+        throw new IOException("Malformed number in session log");
+    }
+
+    // A failed write stops the recording rather than the game
+    private static void fail(IOException e){
+        e.printStackTrace();
+        stop();
+    }
+}
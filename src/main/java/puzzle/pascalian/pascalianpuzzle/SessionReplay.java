@@ -0,0 +1,354 @@
+package puzzle.pascalian.pascalianpuzzle;
+
+import javafx.application.Platform;
+import javafx.event.Event;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.stage.Stage;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a session log recorded by SessionRecorder and reports how long each
+ * event took to compute.
+ *
+ * By default the log is replayed headless on a BoardModel, one event straight
+ * after the other with no animation sleeps, so only the computation is timed.
+ * With --ui the log is replayed through a real window: every event is applied
+ * the same way the controls apply it, clicks are fired at the Hexagons as mouse
+ * events, and each event is timed until the board has stopped updating. The UI
+ * replay waits for each event to settle before the next one, so clicks made
+ * during an animation are replayed after it.
+ *
+ * Run with:
+ *   java puzzle.pascalian.pascalianpuzzle.SessionReplay session.log [--ui] [--csv timings.csv]
+ */
+public class SessionReplay {
+
+    private final static long SETTLE_TIMEOUT_SECONDS = 120;
+
+    private final List<SessionRecorder.Event> events;
+    private final long[] eventNanos;
+
+    // Headless board state
+    private int size;
+    private ColorRule rule;
+    private BoardModel model;
+    private final EditHistory history = new EditHistory(4096);
+
+    // UI board state
+    private BoardView boardView;
+
+    /**
+     * Constructor.
+     * @param events the events of a session log, starting with its start event.
+     */
+    public SessionReplay(List<SessionRecorder.Event> events){
+        if(events.isEmpty() || events.get(0).type() != SessionRecorder.START){
+            throw new IllegalArgumentException("Session log does not begin with a start event");
+        }
+        this.events = events;
+        eventNanos = new long[events.size()];
+    }
+
+    public static void main(String[] args) throws Exception {
+        if(args.length == 0){
+            System.err.println("Usage: SessionReplay <session log> [--ui] [--csv <file>]");
+            System.exit(1);
+        }
+        boolean ui = false;
+        Path csv = null;
+        for(int i = 1; i < args.length; i++){
+            if(args[i].equals("--ui")){
+                ui = true;
+            }else if(args[i].equals("--csv") && i + 1 < args.length){
+                csv = Path.of(args[++i]);
+            }
+        }
+
+        SessionReplay replay = new SessionReplay(SessionRecorder.read(Path.of(args[0])));
+        long start = System.nanoTime();
+        if(ui){
+            replay.replayUi();
+        }else{
+            replay.replayHeadless();
+        }
+        long totalNanos = System.nanoTime() - start;
+
+        System.out.println(replay.getSummary(totalNanos));
+        if(csv != null){
+            replay.writeCsv(csv);
+        }
+        if(ui){
+            Platform.exit();
+        }
+    }
+
+    /**
+     * Replays every event on a BoardModel as fast as possible.
+     */
+    protected void replayHeadless(){
+        for(int i = 0; i < events.size(); i++){
+            long start = System.nanoTime();
+            applyHeadless(events.get(i));
+            eventNanos[i] = System.nanoTime() - start;
+        }
+    }
+
+    private void applyHeadless(SessionRecorder.Event event){
+        switch(event.type()){
+            case SessionRecorder.START:
+                size = event.size();
+                rule = getRule(event.ruleName());
+                break;
+            case SessionRecorder.RESET:
+                setStartingRow(BoardModel.createRandomStartingRow(size, event.seed(), rule));
+                break;
+            case SessionRecorder.PATTERN:
+                setStartingRow(BoardModel.createPatternStartingRow(size, rule));
+                break;
+            case SessionRecorder.CLEAR:
+                int[] transparent = new int[size];
+                Arrays.fill(transparent, BoardController.NOT_A_COLOR);
+                setStartingRow(transparent);
+                break;
+            case SessionRecorder.CLICK:
+                click(event.index(), event.secondary());
+                break;
+            case SessionRecorder.UNDO:
+                applyEdit(history.undo());
+                break;
+            case SessionRecorder.REDO:
+                applyEdit(history.redo());
+                break;
+            case SessionRecorder.SIZE:
+                size = event.size();
+                setStartingRow(BoardModel.createRandomStartingRow(size, event.seed(), rule));
+                break;
+            case SessionRecorder.RULE:
+                rule = getRule(event.ruleName());
+                setStartingRow(BoardModel.createRandomStartingRow(size, event.seed(), rule));
+                break;
+            case SessionRecorder.ROW:
+                size = event.size();
+                setStartingRow(event.startingRow());
+                break;
+            default: // Animation speed changes cost nothing without animation
+                break;
+        }
+    }
+
+    private void setStartingRow(int[] startingRow){
+        model = new BoardModel(startingRow, rule);
+        history.clear();
+    }
+
+    /**
+     * Shifts the color of a hexagon the same way a Hexagon does when clicked.
+     * @param index the index of the hexagon.
+     * @param secondary true for a right click, false for a left click.
+     */
+    private void click(int index, boolean secondary){
+        int oldColorIndex = model.getColorFromIndex(index);
+        int colorCount = rule.getColorCount();
+        int newColorIndex = secondary
+                ? (oldColorIndex + colorCount - 1) % colorCount
+                : (oldColorIndex + 1) % colorCount;
+        history.record(index, oldColorIndex, newColorIndex);
+        int row = 0;
+        while(row + 1 < size && model.getRowStart(row + 1) <= index){
+            row++;
+        }
+        // The hexagons the propagation changes are recorded too, the same as on the board
+        int belowStart = model.getRowStart(row + 1);
+        int[] below = new int[model.getCellCount() - belowStart];
+        for(int i = 0; i < below.length; i++){
+            below[i] = model.getColorFromIndex(belowStart + i);
+        }
+        model.setColor(row, index - model.getRowStart(row), newColorIndex);
+        for(int i = 0; i < below.length; i++){
+            int colorIndex = model.getColorFromIndex(belowStart + i);
+            if(colorIndex != below[i]){
+                history.recordPropagated(belowStart + i, below[i], colorIndex);
+            }
+        }
+    }
+
+    /**
+     * Sets the hexagons of an undone or redone edit to their colors, without propagating.
+     * @param edit the index, color pairs of the hexagons, or null to do nothing.
+     */
+    private void applyEdit(int[] edit){
+        if(edit == null){ return; }
+        for(int i = 0; i < edit.length; i += 2){
+            model.setColorFromIndex(edit[i], edit[i + 1]);
+        }
+    }
+
+    /**
+     * @return the board of the headless replay, or null before the first starting row.
+     */
+    protected BoardModel getBoardModel(){
+        return model;
+    }
+
+    private static ColorRule getRule(String name){
+        ColorRule rule = ColorRule.forName(name);
+        if(rule == null){
+            throw new IllegalArgumentException("Unknown rule in session log: " + name);
+        }
+        return rule;
+    }
+
+    /**
+     * Replays every event through the real window, each as soon as the previous one has settled.
+     */
+    protected void replayUi() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        Platform.startup(() -> {
+            try {
+                Main main = new Main();
+                main.start(new Stage());
+                boardView = main.getBoardView();
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                started.countDown();
+            }
+        });
+        started.await();
+        if(boardView == null){
+            throw new IllegalStateException("Window could not be started");
+        }
+
+        for(int i = 0; i < events.size(); i++){
+            SessionRecorder.Event event = events.get(i);
+            long start = System.nanoTime();
+            onFxThread(() -> { applyUi(event); return null; });
+            waitForSettled();
+            eventNanos[i] = System.nanoTime() - start;
+        }
+    }
+
+    private void applyUi(SessionRecorder.Event event){
+        switch(event.type()){
+            case SessionRecorder.START:
+                ColorRule.setActiveRule(getRule(event.ruleName()));
+                boardView.updateAnimationSpeed(event.speed());
+                if(boardView.getStartingRowLength() != event.size()){
+                    boardView.changeBoardSize(event.size());
+                }
+                break;
+            case SessionRecorder.RESET:
+                boardView.setupBoard(event.seed());
+                break;
+            case SessionRecorder.PATTERN:
+                boardView.setupSpecialBoard();
+                break;
+            case SessionRecorder.CLEAR:
+                boardView.clearBoard();
+                break;
+            case SessionRecorder.CLICK:
+                MouseButton button = event.secondary() ? MouseButton.SECONDARY : MouseButton.PRIMARY;
+                Event.fireEvent(BoardView.getHexagon(event.index()), new MouseEvent(MouseEvent.MOUSE_CLICKED,
+                        1, 1, 1, 1, button, 1, false, false, false, false,
+                        !event.secondary(), false, event.secondary(), true, false, true, null));
+                break;
+            case SessionRecorder.UNDO:
+                boardView.undo();
+                break;
+            case SessionRecorder.REDO:
+                boardView.redo();
+                break;
+            case SessionRecorder.SIZE:
+                boardView.changeBoardSize(event.size(), event.seed());
+                break;
+            case SessionRecorder.SPEED:
+                boardView.updateAnimationSpeed(event.speed());
+                break;
+            case SessionRecorder.RULE:
+                ColorRule.setActiveRule(getRule(event.ruleName()));
+                boardView.setupBoard(event.seed());
+                break;
+            case SessionRecorder.ROW:
+                if(boardView.getStartingRowLength() != event.size()){
+                    boardView.changeBoardSize(event.size()); // its build is cancelled by the next one
+                }
+                boardView.setupBoard(event.startingRow());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void waitForSettled() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SETTLE_TIMEOUT_SECONDS);
+        while(BoardView.isUpdating()){
+            if(System.nanoTime() > deadline){
+                throw new IllegalStateException("Board did not settle");
+            }
+            Thread.sleep(0, 100_000);
+        }
+    }
+
+    private static <T> T onFxThread(Callable<T> callable) throws Exception {
+        FutureTask<T> task = new FutureTask<>(callable);
+        Platform.runLater(task);
+        return task.get();
+    }
+
+    /**
+     * @param totalNanos the time the whole replay took.
+     * @return the count, mean, median, 99th percentile and maximum time of each event type, in milliseconds.
+     */
+    protected String getSummary(long totalNanos){
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("%d events replayed in %.3f ms%n", events.size(), totalNanos / 1_000_000.0));
+        summary.append(String.format("%-8s %7s %10s %10s %10s %10s%n", "event", "count", "mean", "p50", "p99", "max"));
+        for(int type = 0; type < SessionRecorder.EVENT_NAMES.length; type++){
+            ArrayList<Long> nanos = new ArrayList<>();
+            for(int i = 0; i < events.size(); i++){
+                if(events.get(i).type() == type){
+                    nanos.add(eventNanos[i]);
+                }
+            }
+            if(nanos.isEmpty()){ continue; }
+            long[] sorted = nanos.stream().mapToLong(Long::longValue).sorted().toArray();
+            summary.append(String.format("%-8s %7d %10.3f %10.3f %10.3f %10.3f%n", SessionRecorder.EVENT_NAMES[type],
+                    sorted.length, Arrays.stream(sorted).average().orElse(0) / 1_000_000.0,
+                    percentile(sorted, 50), percentile(sorted, 99), sorted[sorted.length - 1] / 1_000_000.0));
+        }
+        if(model != null){
+            summary.append("Final apex color: ").append(model.getApexColor());
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Writes the time of every event, in the order they were replayed.
+     * @param file the CSV file to write.
+     */
+    protected void writeCsv(Path file) throws IOException {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file))) {
+            writer.println("event,type,recordedMicros,computeMicros");
+            for(int i = 0; i < events.size(); i++){
+                writer.printf("%d,%s,%d,%.1f%n", i, events.get(i), events.get(i).micros(), eventNanos[i] / 1000.0);
+            }
+        }
+    }
+
+    private static double percentile(long[] sorted, double percentile){
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,107 @@
+package puzzle.pascalian.pascalianpuzzle;
+
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Creates random starting rows from a seed. The same seed, length and number of
+ * colors always give the same row, on any machine and with any number of threads.
+ *
+ * The row is cut into blocks of a fixed number of hexagons, and every block has
+ * its own SplittableRandom seeded from the seed and the block number, so the
+ * blocks can be filled in any order or in parallel. Each 24 bit random word is
+ * turned into many hexagons at once: a word below the largest multiple of k^c is
+ * read as c digits in base k, and words above it are drawn again, which keeps
+ * every color exactly equally likely.
+ *
+ * Seeds are shown to the user as 16 hex digits, see formatSeed and parseSeed.
+ */
+public class StartingRowGenerator {
+
+    private final static int BLOCK_LENGTH = 1024;
+    private final static int MIN_PARALLEL_LENGTH = 1 << 16;
+    private final static long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private final static int WORD_RANGE = 1 << 24;
+    private final static int MAX_COLOR_COUNT = 1 << 16;
+
+    private StartingRowGenerator(){}
+
+    /**
+     * Creates a random starting row. Long rows are filled in parallel.
+     * @param length the number of hexagons in the starting row.
+     * @param seed the seed of the random colors.
+     * @param colorCount the number of colors, from 1 up.
+     * @return the color indices of the starting row.
+     */
+    protected static int[] createRow(int length, long seed, int colorCount){
+        if(colorCount < 1 || colorCount > MAX_COLOR_COUNT){
+            throw new IllegalArgumentException("Rows can have 1 to " + MAX_COLOR_COUNT + " colors");
+        }
+        int[] row = new int[length];
+        int blocks = (length + BLOCK_LENGTH - 1) / BLOCK_LENGTH;
+        if(length >= MIN_PARALLEL_LENGTH){
+            IntStream.range(0, blocks).parallel().forEach(block -> fillBlock(row, block, seed, colorCount));
+        }else{
+            for(int block = 0; block < blocks; block++){
+                fillBlock(row, block, seed, colorCount);
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Fills one block of the row with the colors of its own random stream.
+     */
+    private static void fillBlock(int[] row, int block, long seed, int colorCount){
+        int from = block * BLOCK_LENGTH;
+        int to = Math.min(from + BLOCK_LENGTH, row.length);
+        if(colorCount == 1){ return; } // every hexagon is color 0
+        SplittableRandom random = new SplittableRandom(mix(seed + (block + 1) * GOLDEN_GAMMA));
+
+        // The most base k digits a 24 bit word holds, and the largest multiple of k^digits it can be
+        int digits = 0;
+        int power = 1;
+        while(power <= WORD_RANGE / colorCount){
+            power *= colorCount;
+            digits++;
+        }
+        int limit = WORD_RANGE - WORD_RANGE % power;
+        // word / k as a multiply and shift, exact for words below 2^24 and k below 2^16
+        long reciprocal = ((1L << 40) + colorCount - 1) / colorCount;
+
+        int i = from;
+        while(i < to){
+            long word = random.nextInt() >>> 8;
+            if(word >= limit){ continue; } // would make the low colors more likely
+            for(int d = 0; d < digits && i < to; d++){
+                long quotient = (word * reciprocal) >>> 40;
+                row[i++] = (int) (word - quotient * colorCount);
+                word = quotient;
+            }
+        }
+    }
+
+    /**
+     * @param seed a seed.
+     * @return the seed as 16 hex digits, for showing and sharing.
+     */
+    protected static String formatSeed(long seed){
+        return String.format("%016x", seed);
+    }
+
+    /**
+     * @param text a seed as up to 16 hex digits.
+     * @return the seed.
+     * @throws NumberFormatException if the text is not a seed.
+     */
+    protected static long parseSeed(String text){
+        return Long.parseUnsignedLong(text.trim(), 16);
+    }
+
+    // The SplitMix64 finalizer, spreads nearby seeds and block numbers over the whole range
+    protected static long mix(long z){
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
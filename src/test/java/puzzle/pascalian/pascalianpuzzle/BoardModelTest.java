@@ -0,0 +1,76 @@
+package puzzle.pascalian.pascalianpuzzle;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BoardModelTest {
+
+    private final static ColorRule[] LINEAR_RULES = {
+            ColorRule.PASCALIAN,
+            ColorRule.forName("Pascal mod 2"),
+            ColorRule.forName("Pascal mod 3"),
+            ColorRule.forName("Pascal mod 5")
+    };
+
+    /**
+     * The solutions of solve are exactly the single hexagon changes that make the
+     * apex the target, found by changing every hexagon to every color and propagating.
+     */
+    @Test
+    void solveFindsEveryChangeGivingTheTarget(){
+        SplittableRandom random = new SplittableRandom(30);
+        for(ColorRule rule : LINEAR_RULES){
+            int colorCount = rule.getColorCount();
+            for(int length = 2; length <= 14; length++){
+                int[] startingRow = ColorRuleTest.randomRow(length, colorCount, random);
+                for(int target = 0; target < colorCount; target++){
+                    HashSet<String> expected = new HashSet<>();
+                    if(getApex(startingRow, rule) != target){
+                        for(int i = 0; i < length; i++){
+                            for(int color = 0; color < colorCount; color++){
+                                int[] changed = startingRow.clone();
+                                changed[i] = color;
+                                if(color != startingRow[i] && getApex(changed, rule) == target){
+                                    expected.add(i + ":" + color);
+                                }
+                            }
+                        }
+                    }
+                    HashSet<String> actual = new HashSet<>();
+                    for(int[] solution : BoardModel.solve(startingRow, target, rule)){
+                        actual.add(solution[0] + ":" + solution[1]);
+                    }
+                    assertEquals(expected, actual, rule.getName() + ", length " + length + ", target " + target);
+                }
+            }
+        }
+    }
+
+    @Test
+    void apexMatchesPropagation(){
+        SplittableRandom random = new SplittableRandom(31);
+        for(ColorRule rule : ColorRuleTest.getSmallRules(random)){
+            for(int length : new int[] {1, 2, 3, 10, 28, 64, 100}){
+                int[] startingRow = ColorRuleTest.randomRow(length, rule.getColorCount(), random);
+                int apex = getApex(startingRow, rule);
+                assertEquals(apex, BoardModel.computeApexColor(startingRow, rule), rule.getName());
+                assertEquals(apex, new BoardModel(startingRow, rule).getApexColor(), rule.getName());
+            }
+        }
+    }
+
+    @Test
+    void solveRejectsNonLinearRules(){
+        ColorRule rule = ColorRule.forName("Rock Paper Scissors");
+        assertThrows(IllegalArgumentException.class, () -> BoardModel.solve(new int[] {0, 1, 2}, 0, rule));
+    }
+
+    private static int getApex(int[] startingRow, ColorRule rule){
+        return ColorRuleTest.advanceByTable(startingRow, startingRow.length - 1, rule)[0];
+    }
+}
@@ -0,0 +1,174 @@
+package puzzle.pascalian.pascalianpuzzle;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoardServerTest {
+
+    private BoardServer server;
+
+    /**
+     * A response status and body.
+     */
+    private record Response(int status, String body){}
+
+    @BeforeEach
+    void start() throws IOException {
+        server = new BoardServer(0);
+        server.start();
+    }
+
+    @AfterEach
+    void stop(){
+        server.stop(0);
+    }
+
+    @Test
+    void batchedApexMatchesTheModel() throws Exception {
+        SplittableRandom random = new SplittableRandom(26);
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        try {
+            ArrayList<int[]> rows = new ArrayList<>();
+            ArrayList<Future<Response>> responses = new ArrayList<>();
+            for(int i = 0; i < 64; i++){
+                int[] startingRow = ColorRuleTest.randomRow(1 + random.nextInt(256), 3, random);
+                rows.add(startingRow);
+                responses.add(clients.submit(() -> get("/apex?row=" + toDigits(startingRow))));
+            }
+            for(int i = 0; i < rows.size(); i++){
+                int apex = BoardModel.computeApexColor(rows.get(i), ColorRule.PASCALIAN);
+                assertEquals(new Response(200, "{\"apex\":" + apex + "}"), responses.get(i).get());
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    @Test
+    void unbatchedApexMatchesTheModel() throws Exception {
+        SplittableRandom random = new SplittableRandom(27);
+        int[] longRow = ColorRuleTest.randomRow(1000, 3, random); // too long to batch
+        assertEquals(new Response(200, "{\"apex\":" + BoardModel.computeApexColor(longRow, ColorRule.PASCALIAN) + "}"),
+                get("/apex?row=" + toDigits(longRow)));
+
+        ColorRule rule = ColorRule.forName("Rock Paper Scissors"); // only the Pascalian rule is batched
+        int[] startingRow = ColorRuleTest.randomRow(40, 3, random);
+        assertEquals(new Response(200, "{\"apex\":" + BoardModel.computeApexColor(startingRow, rule) + "}"),
+                get("/apex?rule=Rock%20Paper%20Scissors&row=" + toDigits(startingRow)));
+    }
+
+    @Test
+    void cellAndRowMatchTheModel() throws Exception {
+        int[] startingRow = ColorRuleTest.randomRow(30, 5, new SplittableRandom(28));
+        ColorRule rule = ColorRule.forName("Pascal mod 5");
+        BoardModel model = new BoardModel(startingRow, rule);
+        String query = "rule=Pascal%20mod%205&row=" + toDigits(startingRow);
+        for(int row = 0; row < startingRow.length; row += 7){
+            assertEquals(new Response(200, "{\"row\":\"" + toDigits(model.getRow(row)) + "\"}"),
+                    get("/row?" + query + "&r=" + row));
+            for(int col = 0; col < startingRow.length - row; col += 5){
+                assertEquals(new Response(200, "{\"color\":" + model.getColor(row, col) + "}"),
+                        get("/cell?" + query + "&r=" + row + "&c=" + col));
+            }
+        }
+    }
+
+    @Test
+    void solveListsEverySolution() throws Exception {
+        assertEquals(new Response(200, "{\"solutions\":[{\"index\":0,\"color\":2,\"clicks\":1},"
+                        + "{\"index\":3,\"color\":2,\"clicks\":1}],\"clicks\":1}"),
+                get("/solve?row=0120&target=1"));
+        assertEquals(new Response(200, "{\"solutions\":[],\"clicks\":0}"), get("/solve?row=0120&target=0"));
+    }
+
+    @Test
+    void badQueriesAreRejected() throws Exception {
+        assertEquals(400, get("/apex?row=01x").status());
+        assertEquals(400, get("/apex").status());
+        assertEquals(400, get("/cell?row=012&r=3&c=0").status());
+        assertEquals(400, get("/solve?rule=Rock%20Paper%20Scissors&row=012&target=0").status());
+        // Quotes, backslashes and control characters of the rule name are escaped
+        assertEquals(new Response(400, "{\"error\":\"Unknown rule: a\\\\b\\\"c\\n\\u0001\"}"),
+                get("/apex?rule=a%5Cb%22c%0A%01&row=0"));
+
+        HttpURLConnection post = open("/apex?row=012");
+        post.setRequestMethod("POST");
+        assertEquals(405, post.getResponseCode());
+        post.disconnect();
+    }
+
+    /**
+     * Identical queries arriving while one is computed share its answer, so
+     * fewer queries are computed than asked.
+     */
+    @Test
+    void identicalQueriesShareAnAnswer() throws Exception {
+        // A slow query: 10 000 rows of a 5 color rule, stepped one hexagon at a time
+        String path = "/row?rule=Pascal%20mod%205&r=9999&row="
+                + toDigits(ColorRuleTest.randomRow(10_000, 5, new SplittableRandom(29)));
+        int requests = 8;
+        ExecutorService clients = Executors.newFixedThreadPool(requests);
+        try {
+            List<Future<Response>> responses = new ArrayList<>();
+            for(int i = 0; i < requests; i++){
+                responses.add(clients.submit(() -> get(path)));
+            }
+            Response first = responses.get(0).get();
+            assertEquals(200, first.status());
+            for(Future<Response> response : responses){
+                assertEquals(first, response.get());
+            }
+            assertTrue(server.getAnsweredQueryCount() < requests,
+                    server.getAnsweredQueryCount() + " of " + requests + " identical queries computed");
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    @Test
+    void stopFailsQueuedApexRequests(){
+        ApexBatcher batcher = new ApexBatcher(ColorRule.PASCALIAN);
+        batcher.shutdown();
+        assertTrue(batcher.submit(new int[] {0, 1, 2}).isCompletedExceptionally());
+    }
+
+    private HttpURLConnection open(String path) throws IOException {
+        return (HttpURLConnection) new URL("http://127.0.0.1:" + server.getPort() + path).openConnection();
+    }
+
+    private Response get(String path) throws IOException {
+        HttpURLConnection connection = open(path);
+        try {
+            int status = connection.getResponseCode();
+            try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                return new Response(status, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static String toDigits(int[] row){
+        StringBuilder digits = new StringBuilder(row.length);
+        for(int colorIndex : row){
+            digits.append(colorIndex);
+        }
+        return digits.toString();
+    }
+}
@@ -0,0 +1,91 @@
+package puzzle.pascalian.pascalianpuzzle;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BoardStatisticsTest {
+
+    private final static String[] PATTERN_RULES = {"Pascalian", "Pascal mod 2", "Pascal mod 3", "Pascal mod 5"};
+    private final static int[][] PERIODS = {{0}, {1}, {0, 1}, {1, 2, 0}, {0, 0, 1}, {1, 0, 1, 1, 0}};
+
+    @Test
+    void patternMatchesPropagation(){
+        for(String ruleName : PATTERN_RULES){
+            ColorRule rule = ColorRule.forName(ruleName);
+            for(int size = 1; size <= 130; size++){
+                int[] startingRow = BoardModel.createPatternStartingRow(size, rule);
+                BoardStatistics statistics = BoardStatistics.forPattern(size, rule);
+                assertEquals("pattern", statistics.getMethod());
+                checkStatistics(startingRow, rule, statistics);
+                assertEquals("pattern", BoardStatistics.forStartingRow(startingRow, rule).getMethod());
+            }
+        }
+    }
+
+    @Test
+    void periodicRowsMatchPropagation(){
+        for(ColorRule rule : ColorRule.getRules()){
+            for(int[] period : PERIODS){
+                for(int size : new int[] {1, 2, 5, 17, 64, 100, 129}){
+                    int[] startingRow = new int[size];
+                    for(int i = 0; i < size; i++){
+                        startingRow[i] = period[i % period.length] % rule.getColorCount();
+                    }
+                    int[] ruleColors = new int[period.length];
+                    for(int i = 0; i < period.length; i++){
+                        ruleColors[i] = period[i] % rule.getColorCount();
+                    }
+                    String where = rule.getName() + ", period " + Arrays.toString(period) + ", size " + size;
+                    checkStatistics(startingRow, rule, BoardStatistics.forPeriodicRow(ruleColors, size, rule), where);
+                    checkStatistics(startingRow, rule, BoardStatistics.forStartingRow(startingRow, rule), where);
+                }
+            }
+        }
+    }
+
+    @Test
+    void randomRowsMatchPropagation(){
+        SplittableRandom random = new SplittableRandom(34);
+        for(ColorRule rule : ColorRule.getRules()){
+            for(int size = 1; size <= 80; size += 3){
+                int[] startingRow = ColorRuleTest.randomRow(size, rule.getColorCount(), random);
+                checkStatistics(startingRow, rule, BoardStatistics.forStartingRow(startingRow, rule),
+                        rule.getName() + ", size " + size);
+            }
+        }
+    }
+
+    private static void checkStatistics(int[] startingRow, ColorRule rule, BoardStatistics statistics){
+        checkStatistics(startingRow, rule, statistics, rule.getName() + ", size " + startingRow.length);
+    }
+
+    /**
+     * Propagates the whole board one row at a time and compares every count with the statistics.
+     */
+    private static void checkStatistics(int[] startingRow, ColorRule rule, BoardStatistics statistics, String where){
+        int colorCount = rule.getColorCount();
+        long[] colorCounts = new long[colorCount];
+        long solidRows = 0;
+        int[] row = startingRow;
+        for(int r = 0; r < startingRow.length; r++){
+            long[] histogram = new long[colorCount];
+            for(int colorIndex : row){
+                histogram[colorIndex]++;
+                colorCounts[colorIndex]++;
+            }
+            if(histogram[row[0]] == row.length){
+                solidRows++;
+            }
+            assertArrayEquals(histogram, statistics.getRowHistogram(r), where + ", row " + r);
+            row = ColorRuleTest.advanceByTable(row, 1, rule);
+        }
+        assertArrayEquals(colorCounts, statistics.getColorCounts(), where);
+        assertEquals(solidRows, statistics.getSolidRowCount(), where);
+        assertEquals(startingRow.length, statistics.getSize(), where);
+    }
+}
@@ -0,0 +1,92 @@
+package puzzle.pascalian.pascalianpuzzle;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class ColorRuleTest {
+
+    private final static int[] LENGTHS = {64, 65, 127, 128, 129, 200, 1000};
+
+    /**
+     * Rows of 64 or more hexagons with at most 3 colors take the bit-sliced path,
+     * which must agree with looking every child up in the rule's table.
+     */
+    @Test
+    void bitSlicedRowsMatchTheTable(){
+        SplittableRandom random = new SplittableRandom(30);
+        for(ColorRule rule : getSmallRules(random)){
+            for(int length : LENGTHS){
+                for(int steps : new int[] {1, 2, 63, 64, 65, length / 2, length - 1}){
+                    if(steps >= length){ continue; }
+                    int[] row = randomRow(length, rule.getColorCount(), random);
+                    int[] expected = advanceByTable(row, steps, rule);
+                    int[] actual = row.clone();
+                    rule.advanceRow(actual, length, steps);
+                    assertArrayEquals(expected, Arrays.copyOf(actual, length - steps),
+                            rule.getName() + ", length " + length + ", " + steps + " steps");
+                }
+            }
+        }
+    }
+
+    /**
+     * A transparent hexagon sends the row down the table path, so it must give the
+     * same children as a row without one wherever the transparent hexagon is not a parent.
+     */
+    @Test
+    void transparentRowsMatchTheTable(){
+        SplittableRandom random = new SplittableRandom(31);
+        for(ColorRule rule : getSmallRules(random)){
+            int[] row = randomRow(100, rule.getColorCount(), random);
+            row[99] = BoardController.NOT_A_COLOR;
+            int[] expected = advanceByTable(row, 1, rule);
+            int[] actual = row.clone();
+            rule.advanceRow(actual, row.length, 1);
+            assertArrayEquals(expected, Arrays.copyOf(actual, 99), rule.getName());
+        }
+    }
+
+    static List<ColorRule> getSmallRules(SplittableRandom random){
+        ArrayList<ColorRule> rules = new ArrayList<>();
+        for(ColorRule rule : ColorRule.getRules()){
+            if(rule.getColorCount() <= 3){
+                rules.add(rule);
+            }
+        }
+        int[][] table = new int[3][3];
+        for(int[] line : table){
+            for(int right = 0; right < line.length; right++){
+                line[right] = random.nextInt(3);
+            }
+        }
+        rules.add(ColorRule.fromTable("Random table", table));
+        rules.add(ColorRule.additive("Pascal mod 3 plus 1", 3, 1, 1, 1));
+        return rules;
+    }
+
+    static int[] randomRow(int length, int colorCount, SplittableRandom random){
+        return random.ints(length, 0, colorCount).toArray();
+    }
+
+    /**
+     * Moves a row down one child at a time with getNextColorIndex.
+     * @return the row the given number of rows down.
+     */
+    static int[] advanceByTable(int[] row, int steps, ColorRule rule){
+        int[] current = row.clone();
+        for(int step = 1; step <= steps; step++){
+            int[] next = new int[current.length - 1];
+            for(int i = 0; i < next.length; i++){
+                next[i] = rule.getNextColorIndex(current[i], current[i + 1], BoardController.NOT_A_COLOR);
+            }
+            current = next;
+        }
+        return current;
+    }
+}
@@ -0,0 +1,117 @@
+package puzzle.pascalian.pascalianpuzzle;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EditHistoryTest {
+
+    @Test
+    void undoThenRedoRestoresBothColors(){
+        EditHistory history = new EditHistory(4);
+        history.record(7, 0, 1);
+        history.record(1830, 2, BoardController.NOT_A_COLOR);
+
+        assertArrayEquals(new int[] {1830, 2}, history.undo());
+        assertArrayEquals(new int[] {7, 0}, history.undo());
+        assertNull(history.undo());
+        assertFalse(history.canUndo());
+
+        assertArrayEquals(new int[] {7, 1}, history.redo());
+        assertArrayEquals(new int[] {1830, BoardController.NOT_A_COLOR}, history.redo());
+        assertNull(history.redo());
+        assertTrue(history.canUndo());
+    }
+
+    @Test
+    void newEditClearsRedo(){
+        EditHistory history = new EditHistory(4);
+        history.record(1, 0, 1);
+        history.record(2, 0, 1);
+        history.undo();
+        assertTrue(history.canRedo());
+
+        history.record(3, 1, 2);
+        assertFalse(history.canRedo());
+        assertNull(history.redo());
+        assertArrayEquals(new int[] {3, 1}, history.undo());
+        assertArrayEquals(new int[] {1, 0}, history.undo());
+        assertNull(history.undo());
+    }
+
+    /**
+     * Once full, each edit overwrites the oldest one, and undo and redo keep
+     * working across the end of the ring.
+     */
+    @Test
+    void fullRingForgetsTheOldestEdits(){
+        int depth = 3;
+        EditHistory history = new EditHistory(depth);
+        for(int index = 0; index < 10; index++){
+            history.record(index, index % 3, (index + 1) % 3);
+        }
+        for(int index = 9; index >= 10 - depth; index--){
+            assertArrayEquals(new int[] {index, index % 3}, history.undo());
+        }
+        assertNull(history.undo());
+
+        for(int index = 10 - depth; index < 10; index++){
+            assertArrayEquals(new int[] {index, (index + 1) % 3}, history.redo());
+        }
+        assertNull(history.redo());
+
+        // Undoing part way then recording, the ring wraps again from the middle
+        history.undo();
+        history.record(42, 2, 0);
+        assertArrayEquals(new int[] {42, 2}, history.undo());
+        assertArrayEquals(new int[] {8, 2}, history.undo());
+        assertArrayEquals(new int[] {7, 1}, history.undo());
+        assertNull(history.undo());
+    }
+
+    @Test
+    void propagatedHexagonsAreRestoredWithTheirEdit(){
+        EditHistory history = new EditHistory(4);
+        history.record(3, 2, 0);
+        history.recordPropagated(5, 1, 0);
+        history.record(0, 0, 1);
+        for(int index = 3; index < 13; index++){ // more hexagons than an edit starts with
+            history.recordPropagated(index, index % 3, (index + 1) % 3);
+        }
+
+        int[] undone = history.undo();
+        assertEquals(22, undone.length);
+        assertArrayEquals(new int[] {0, 0, 3, 0, 4, 1}, Arrays.copyOf(undone, 6));
+        assertArrayEquals(new int[] {3, 2, 5, 1}, history.undo());
+
+        // Propagation recorded after an undo belongs to no edit
+        history.recordPropagated(9, 0, 1);
+        assertArrayEquals(new int[] {3, 0, 5, 0}, history.redo());
+        int[] redone = history.redo();
+        assertArrayEquals(new int[] {0, 1, 3, 1, 4, 2}, Arrays.copyOf(redone, 6));
+        assertEquals(22, redone.length);
+    }
+
+    @Test
+    void clearForgetsEverything(){
+        EditHistory history = new EditHistory(2);
+        history.record(1, 0, 1);
+        history.record(2, 0, 1);
+        history.undo();
+        history.clear();
+        assertFalse(history.canUndo());
+        assertFalse(history.canRedo());
+    }
+
+    @Test
+    void depthMustBePositive(){
+        assertThrows(IllegalArgumentException.class, () -> new EditHistory(0));
+    }
+}
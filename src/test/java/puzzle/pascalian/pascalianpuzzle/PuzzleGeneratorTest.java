@@ -0,0 +1,140 @@
+package puzzle.pascalian.pascalianpuzzle;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PuzzleGeneratorTest {
+
+    private final static Pattern ROW = Pattern.compile("\"row\":\"(\\d+)\"");
+    private final static Pattern TARGET = Pattern.compile("\"target\":(\\d+)");
+    private final static Pattern PINNED = Pattern.compile("\"pinned\":\\[([\\d,]*)]");
+    private final static Pattern STEP = Pattern.compile("\"index\":(\\d+),\"color\":(\\d+)");
+
+    /**
+     * Every puzzle is checked against every possible starting row: the planted
+     * solution must be the only one with the puzzle's number of clicks, and no
+     * starting row with fewer clicks may solve it. Puzzles only allow clicks
+     * on the starting row, so every starting row is every way to play them.
+     */
+    @Test
+    void puzzlesHaveOneMinimalSolution(){
+        int checked = 0;
+        for(String ruleName : new String[] {"Pascalian", "Pascal mod 2", "Pascal mod 3", "Pascal mod 5"}){
+            ColorRule rule = ColorRule.forName(ruleName);
+            int size = rule.getColorCount() == 5 ? 5 : 7;
+            for(int clicks = 1; clicks <= 3; clicks++){
+                PuzzleGenerator generator = new PuzzleGenerator(size, clicks, rule);
+                for(long seed = 0; seed < 30; seed++){
+                    String puzzle = generator.generate(seed);
+                    if(puzzle != null){
+                        checkPuzzle(puzzle, size, clicks, rule);
+                        checked++;
+                    }
+                }
+            }
+        }
+        assertTrue(checked > 100, "only " + checked + " puzzles generated");
+    }
+
+    @Test
+    void generateWritesEveryPuzzle(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("puzzles.jsonl");
+        new PuzzleGenerator(10, 2, ColorRule.PASCALIAN).generate(50, 30, 2, file);
+        assertEquals(50, Files.readAllLines(file).size());
+    }
+
+    @Test
+    void generateFailsWhenAWorkerFails(@TempDir Path directory){
+        PuzzleGenerator failing = new PuzzleGenerator(10, 2, ColorRule.PASCALIAN) {
+            @Override
+            protected String generate(long seed){
+                throw new ArithmeticException("failing on purpose");
+            }
+        };
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            IllegalStateException e = assertThrows(IllegalStateException.class,
+                    () -> failing.generate(10, 30, 2, directory.resolve("puzzles.jsonl")));
+            assertTrue(e.getCause() instanceof ArithmeticException);
+        });
+    }
+
+    @Test
+    void generateGivesUpWhenNoBoardMakesAPuzzle(@TempDir Path directory){
+        PuzzleGenerator impossible = new PuzzleGenerator(10, 2, ColorRule.PASCALIAN) {
+            @Override
+            protected String generate(long seed){
+                return null;
+            }
+        };
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            IllegalStateException e = assertThrows(IllegalStateException.class,
+                    () -> impossible.generate(10, 30, 2, directory.resolve("puzzles.jsonl")));
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        });
+    }
+
+    private static void checkPuzzle(String puzzle, int size, int clicks, ColorRule rule){
+        assertTrue(puzzle.contains("\"clickable\":\"starting row\""), puzzle);
+        int colorCount = rule.getColorCount();
+        int[] startingRow = find(ROW, puzzle).chars().map(c -> c - '0').toArray();
+        int target = Integer.parseInt(find(TARGET, puzzle));
+        String pinnedList = find(PINNED, puzzle);
+        int[] pinned = pinnedList.isEmpty() ? new int[0]
+                : Arrays.stream(pinnedList.split(",")).mapToInt(Integer::parseInt).toArray();
+        int[] solution = startingRow.clone();
+        Matcher steps = STEP.matcher(puzzle);
+        while(steps.find()){
+            solution[Integer.parseInt(steps.group(1))] = Integer.parseInt(steps.group(2));
+        }
+        assertEquals(size, startingRow.length, puzzle);
+
+        BoardModel board = new BoardModel(startingRow, rule);
+        int fewestClicks = Integer.MAX_VALUE;
+        ArrayList<int[]> fewestRows = new ArrayList<>();
+        int[] row = new int[size];
+        for(int n = 0; n < Math.pow(colorCount, size); n++){
+            int cost = 0;
+            for(int i = 0, digits = n; i < size; i++, digits /= colorCount){
+                row[i] = digits % colorCount;
+                int step = Math.floorMod(row[i] - startingRow[i], colorCount);
+                cost += Math.min(step, colorCount - step);
+            }
+            if(cost > fewestClicks){ continue; }
+            BoardModel changed = new BoardModel(row, rule);
+            if(changed.getApexColor() != target){ continue; }
+            boolean keepsPins = true;
+            for(int pin : pinned){
+                keepsPins &= changed.getColorFromIndex(pin) == board.getColorFromIndex(pin);
+            }
+            if(!keepsPins){ continue; }
+            if(cost < fewestClicks){
+                fewestClicks = cost;
+                fewestRows.clear();
+            }
+            fewestRows.add(row.clone());
+        }
+        assertEquals(clicks, fewestClicks, puzzle);
+        assertEquals(1, fewestRows.size(), puzzle);
+        assertArrayEquals(solution, fewestRows.get(0), puzzle);
+    }
+
+    private static String find(Pattern pattern, String puzzle){
+        Matcher matcher = pattern.matcher(puzzle);
+        assertTrue(matcher.find(), puzzle);
+        return matcher.group(1);
+    }
+}
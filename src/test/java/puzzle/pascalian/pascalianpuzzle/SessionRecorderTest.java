@@ -0,0 +1,137 @@
+package puzzle.pascalian.pascalianpuzzle;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionRecorderTest {
+
+    private final static int VERSION_OFFSET = 4; // after the magic number
+
+    @Test
+    void everyEventReadsBack(@TempDir Path directory) throws IOException {
+        Path log = directory.resolve("session.log");
+        List<String> expected = recordEveryEvent(log);
+
+        List<SessionRecorder.Event> events = SessionRecorder.read(log);
+        assertEquals(expected, describe(events));
+    }
+
+    /**
+     * A log cut anywhere reads up to the last whole event, never a partial one.
+     */
+    @Test
+    void cutLogReadsTheWholeEvents(@TempDir Path directory) throws IOException {
+        Path log = directory.resolve("session.log");
+        List<String> expected = recordEveryEvent(log);
+        byte[] bytes = Files.readAllBytes(log);
+
+        int read = 0;
+        for(int length = 13; length < bytes.length; length++){ // from the end of the header
+            Path cut = directory.resolve("cut" + length + ".log");
+            Files.write(cut, Arrays.copyOf(bytes, length));
+            List<String> events = describe(SessionRecorder.read(cut));
+            assertEquals(expected.subList(0, events.size()), events);
+            assertTrue(events.size() >= read);
+            read = events.size();
+        }
+        assertEquals(expected.size() - 1, read); // the last byte is always part of the last event
+    }
+
+    @Test
+    void versionTwoLogsAreRead(@TempDir Path directory) throws IOException {
+        Path log = directory.resolve("session.log");
+        List<String> expected = recordEveryEvent(log);
+        byte[] bytes = Files.readAllBytes(log);
+        bytes[VERSION_OFFSET] = 2;
+        Files.write(log, bytes);
+
+        assertEquals(expected, describe(SessionRecorder.read(log)));
+    }
+
+    @Test
+    void otherFilesAreRejected(@TempDir Path directory) throws IOException {
+        Path log = directory.resolve("session.log");
+        recordEveryEvent(log);
+        byte[] bytes = Files.readAllBytes(log);
+
+        for(byte version : new byte[] {0, 1, 4, (byte) 0xFF}){
+            byte[] changed = bytes.clone();
+            changed[VERSION_OFFSET] = version;
+            Path file = directory.resolve("version" + (version & 0xFF) + ".log");
+            Files.write(file, changed);
+            assertThrows(IOException.class, () -> SessionRecorder.read(file));
+        }
+
+        byte[] changed = bytes.clone();
+        changed[0] ^= 1;
+        Path file = directory.resolve("magic.log");
+        Files.write(file, changed);
+        assertThrows(IOException.class, () -> SessionRecorder.read(file));
+    }
+
+    /**
+     * Records one of every event, with values at the ends of their ranges.
+     * @return the recorded events, as described by describe.
+     */
+    private static List<String> recordEveryEvent(Path log) throws IOException {
+        SessionRecorder.start(log, 1 << 20, "Pascal mod 5", 0.25);
+        SessionRecorder.recordReset(Long.MIN_VALUE);
+        SessionRecorder.recordPattern();
+        SessionRecorder.recordClear();
+        SessionRecorder.recordClick(Integer.MAX_VALUE, true);
+        SessionRecorder.recordClick(0, false);
+        SessionRecorder.recordUndo();
+        SessionRecorder.recordRedo();
+        SessionRecorder.recordSize(3000, Long.MAX_VALUE);
+        SessionRecorder.recordSpeed(Double.MAX_VALUE);
+        SessionRecorder.recordSpeed(-0.0);
+        SessionRecorder.recordRule("Rock Paper Scissors", -1);
+        SessionRecorder.recordStartingRow(new int[] {2, BoardController.NOT_A_COLOR, 0, -7, Integer.MAX_VALUE - 1, 1});
+        SessionRecorder.stop();
+        return List.of(
+                "start size=1048576 speed=0.25 rule=Pascal mod 5",
+                "reset seed=" + Long.MIN_VALUE,
+                "pattern",
+                "clear",
+                "click index=" + Integer.MAX_VALUE + " secondary",
+                "click index=0",
+                "undo",
+                "redo",
+                "size size=3000 seed=" + Long.MAX_VALUE,
+                "speed speed=" + Double.MAX_VALUE,
+                "speed speed=-0.0",
+                "rule seed=-1 rule=Rock Paper Scissors",
+                "row size=6 row=[2, -1, 0, -7, " + (Integer.MAX_VALUE - 1) + ", 1]");
+    }
+
+    /**
+     * @return each event as its name and the values of its type, without the time.
+     */
+    private static List<String> describe(List<SessionRecorder.Event> events){
+        return events.stream().map(event -> {
+            StringBuilder description = new StringBuilder(event.toString());
+            if(event.size() != 0){ description.append(" size=").append(event.size()); }
+            if(event.type() == SessionRecorder.CLICK){
+                description.append(" index=").append(event.index());
+                if(event.secondary()){ description.append(" secondary"); }
+            }
+            if(event.seed() != 0){ description.append(" seed=").append(event.seed()); }
+            if(event.type() == SessionRecorder.START || event.type() == SessionRecorder.SPEED){
+                description.append(" speed=").append(event.speed());
+            }
+            if(event.ruleName() != null){ description.append(" rule=").append(event.ruleName()); }
+            if(event.startingRow() != null){ description.append(" row=").append(Arrays.toString(event.startingRow())); }
+            return description.toString();
+        }).toList();
+    }
+}
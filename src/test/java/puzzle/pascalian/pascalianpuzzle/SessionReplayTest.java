@@ -0,0 +1,89 @@
+package puzzle.pascalian.pascalianpuzzle;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SessionReplayTest {
+
+    /**
+     * A click above an earlier click overwrites it by propagation, undoing the
+     * upper click has to give the lower click its color back.
+     */
+    @Test
+    void undoRestoresClicksBelowTheUndoneOne(){
+        List<SessionRecorder.Event> events = new ArrayList<>();
+        events.add(event(SessionRecorder.START, 3, 0, null));
+        events.add(event(SessionRecorder.ROW, 3, 0, new int[] {0, 1, 2}));
+        events.add(event(SessionRecorder.CLICK, 0, 3, null));
+        events.add(event(SessionRecorder.CLICK, 0, 0, null));
+        events.add(event(SessionRecorder.UNDO, 0, 0, null));
+        assertArrayEquals(new int[] {0, 1, 2, 0, 0, 0}, replay(events));
+
+        events.add(event(SessionRecorder.REDO, 0, 0, null));
+        assertArrayEquals(new int[] {1, 1, 2, 1, 0, 2}, replay(events));
+
+        events.add(event(SessionRecorder.UNDO, 0, 0, null));
+        events.add(event(SessionRecorder.UNDO, 0, 0, null));
+        assertArrayEquals(new int[] {0, 1, 2, 2, 0, 1}, replay(events));
+    }
+
+    /**
+     * A recorded log replayed headless ends on the same board as building it directly.
+     */
+    @Test
+    void replayedLogMatchesTheBoardModel(@TempDir Path directory) throws IOException {
+        Path log = directory.resolve("session.log");
+        SessionRecorder.start(log, 40, ColorRule.PASCALIAN.getName(), 0.5);
+        SessionRecorder.recordReset(-3942071L);
+        SessionRecorder.recordClick(7, false);
+        SessionRecorder.recordRule("Pascal mod 5", 12);
+        SessionRecorder.recordClick(45, true);
+        SessionRecorder.recordUndo();
+        SessionRecorder.recordSpeed(0.9);
+        SessionRecorder.recordSize(30, Long.MAX_VALUE);
+        SessionRecorder.recordClick(3, false);
+        SessionRecorder.recordClick(40, true); // the eleventh hexagon of the second row
+        SessionRecorder.recordClick(0, true);
+        SessionRecorder.recordUndo();
+        SessionRecorder.recordRedo();
+        SessionRecorder.recordUndo();
+        SessionRecorder.stop();
+
+        SessionReplay replay = new SessionReplay(SessionRecorder.read(log));
+        replay.replayHeadless();
+
+        ColorRule rule = ColorRule.forName("Pascal mod 5");
+        BoardModel expected = new BoardModel(BoardModel.createRandomStartingRow(30, Long.MAX_VALUE, rule), rule);
+        expected.setColor(0, 3, (expected.getColor(0, 3) + 1) % 5);
+        expected.setColor(1, 10, (expected.getColor(1, 10) + 4) % 5);
+        BoardModel model = replay.getBoardModel();
+        assertEquals(expected.getApexColor(), model.getApexColor());
+        for(int row = 0; row < 30; row++){
+            assertArrayEquals(expected.getRow(row), model.getRow(row));
+        }
+    }
+
+    private static SessionRecorder.Event event(int type, int size, int index, int[] startingRow){
+        return new SessionRecorder.Event(type, 0, size, index, false, 0, 1,
+                ColorRule.PASCALIAN.getName(), startingRow);
+    }
+
+    private static int[] replay(List<SessionRecorder.Event> events){
+        SessionReplay replay = new SessionReplay(events);
+        replay.replayHeadless();
+        BoardModel model = replay.getBoardModel();
+        int[] colors = new int[model.getCellCount()];
+        for(int i = 0; i < colors.length; i++){
+            colors[i] = model.getColorFromIndex(i);
+        }
+        return colors;
+    }
+}
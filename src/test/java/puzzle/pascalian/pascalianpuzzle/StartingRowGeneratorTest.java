@@ -0,0 +1,87 @@
+package puzzle.pascalian.pascalianpuzzle;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StartingRowGeneratorTest {
+
+    private final static int MIN_PARALLEL_LENGTH = 1 << 16;
+    private final static int MAX_COLOR_COUNT = 1 << 16;
+
+    /**
+     * Rows filled in parallel start with the same colors as shorter rows filled on one thread.
+     */
+    @Test
+    void parallelRowsMatchSequentialRows(){
+        for(long seed : new long[] {0, 42, Long.MIN_VALUE}){
+            int[] sequential = StartingRowGenerator.createRow(MIN_PARALLEL_LENGTH - 1, seed, 3);
+            for(int length : new int[] {MIN_PARALLEL_LENGTH, 3 * MIN_PARALLEL_LENGTH + 77}){
+                int[] parallel = StartingRowGenerator.createRow(length, seed, 3);
+                assertEquals(length, parallel.length);
+                assertArrayEquals(sequential, Arrays.copyOf(parallel, sequential.length));
+                assertArrayEquals(parallel, StartingRowGenerator.createRow(length, seed, 3));
+            }
+        }
+    }
+
+    /**
+     * A row that ends part way through a block is the start of every longer row.
+     */
+    @Test
+    void rowsEndingInsideABlockArePrefixes(){
+        int[] longRow = StartingRowGenerator.createRow(4096, 7, 5);
+        for(int length : new int[] {0, 1, 2, 1023, 1024, 1025, 2047, 3001, 4095}){
+            int[] row = StartingRowGenerator.createRow(length, 7, 5);
+            assertArrayEquals(Arrays.copyOf(longRow, length), row, "length " + length);
+        }
+    }
+
+    @Test
+    void everyColorIsInRange(){
+        for(int colorCount : new int[] {1, 2, 3, 5, 1000, MAX_COLOR_COUNT}){
+            int[] counts = new int[colorCount];
+            int[] row = StartingRowGenerator.createRow(100_000, colorCount, colorCount);
+            for(int colorIndex : row){
+                assertTrue(colorIndex >= 0 && colorIndex < colorCount,
+                        colorIndex + " is not one of " + colorCount + " colors");
+                counts[colorIndex]++;
+            }
+            // Every color is as likely as the others, small palettes are close to even
+            if(colorCount <= 5){
+                for(int count : counts){
+                    assertEquals(row.length / (double) colorCount, count, row.length * 0.01);
+                }
+            }else{
+                assertTrue(Arrays.stream(counts).filter(count -> count > 0).count() > colorCount / 2);
+            }
+        }
+    }
+
+    @Test
+    void colorCountMustBeInRange(){
+        assertThrows(IllegalArgumentException.class, () -> StartingRowGenerator.createRow(10, 0, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> StartingRowGenerator.createRow(10, 0, MAX_COLOR_COUNT + 1));
+    }
+
+    @Test
+    void formattedSeedsParseBack(){
+        SplittableRandom random = new SplittableRandom(5);
+        long[] seeds = {0, 1, -1, Long.MIN_VALUE, Long.MAX_VALUE, random.nextLong(), random.nextLong()};
+        for(long seed : seeds){
+            String text = StartingRowGenerator.formatSeed(seed);
+            assertEquals(16, text.length(), text);
+            assertEquals(seed, StartingRowGenerator.parseSeed(text));
+            assertEquals(seed, StartingRowGenerator.parseSeed(" " + text.toUpperCase() + "\n"));
+        }
+        assertThrows(NumberFormatException.class, () -> StartingRowGenerator.parseSeed("not a seed"));
+        assertThrows(NumberFormatException.class, () -> StartingRowGenerator.parseSeed("1" + "0".repeat(16)));
+    }
+}